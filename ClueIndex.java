@@ -0,0 +1,320 @@
+//ClueIndex.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Inverted-file (IVF) approximate nearest-neighbour index over the candidate
+// clues of an embedding store, for vocabularies far too large to score in full.
+//
+// The clue vectors are clustered with k-means into about sqrt(N) lists. A query
+// ranks the centroids, scans the rows of the nprobe closest lists and returns
+// the top K by cosine, so its cost depends on N / lists rather than on N.
+// Building is the expensive part, so the index is saved next to the store
+// ("embeddings.bin.ivf") with the store's fingerprint, and reloaded as long as
+// the fingerprint still matches; a re-exported store gets a fresh index.
+class ClueIndex {
+    static final int MAGIC = 0x56494E43; // "CNIV"
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32; // magic, version, store fingerprint, dim, store rows, lists, clue rows
+    private static final int TRAIN_PER_LIST = 64;
+    private static final int KMEANS_ITERATIONS = 8;
+    private static final long SEED = 42;
+
+    private static final Map<EmbeddingStore, ClueIndex> shared = new WeakHashMap<>();
+
+    private final EmbeddingStore store;
+    private final int dim;
+    private final int lists;
+    private final float[] centroids;  // lists * dim, unit length
+    private final int[] listStart;    // lists + 1 offsets into listRows
+    private final int[] listRows;     // store rows, grouped by list
+    private final float[] rowScale;   // 1 / norm of each listRows entry, so scans read raw rows off the mapping
+
+    private ClueIndex(EmbeddingStore store, int lists, float[] centroids, int[] listStart, int[] listRows, float[] rowScale) {
+        this.store = store;
+        this.dim = store.dim();
+        this.lists = lists;
+        this.centroids = centroids;
+        this.listStart = listStart;
+        this.listRows = listRows;
+        this.rowScale = rowScale;
+    }
+
+    // One index per store, loaded from or saved to the sidecar file when the store came from disk
+    static synchronized ClueIndex forStore(EmbeddingStore store) {
+        ClueIndex index = shared.get(store);
+        if (index == null) {
+            Path sidecar = store.getPath() == null ? null : Paths.get(store.getPath() + ".ivf");
+            if (sidecar != null && Files.exists(sidecar)) {
+                try {
+                    index = load(store, sidecar);
+                } catch (IOException e) {
+                    System.err.println("Rebuilding clue index: " + e.getMessage());
+                }
+            }
+            if (index == null) {
+                long start = System.nanoTime();
+                index = build(store);
+                System.out.printf("Built clue index: %d clues in %d lists (%.1f s)%n",
+                    index.size(), index.lists, (System.nanoTime() - start) / 1e9);
+                if (sidecar != null) {
+                    try {
+                        index.save(sidecar);
+                    } catch (IOException e) {
+                        System.err.println("Could not save clue index: " + e.getMessage());
+                    }
+                }
+            }
+            shared.put(store, index);
+        }
+        return index;
+    }
+
+    static ClueIndex build(EmbeddingStore store) {
+        int[] rows = clueRows(store);
+        int dim = store.dim();
+        int lists = Math.max(1, (int) Math.sqrt(rows.length));
+        Random rnd = new Random(SEED);
+
+        // Train centroids on a sample; k-means quality barely improves past ~64 points per list
+        int sampleSize = Math.min(rows.length, lists * TRAIN_PER_LIST);
+        int[] order = rows.clone();
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + rnd.nextInt(order.length - i);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        float[] train = new float[sampleSize * dim];
+        for (int i = 0; i < sampleSize; i++) {
+            System.arraycopy(unit(store, order[i]), 0, train, i * dim, dim);
+        }
+
+        float[] centroids = Arrays.copyOf(train, lists * dim);
+        int[] sampleList = new int[sampleSize];
+        for (int iter = 0; iter < KMEANS_ITERATIONS; iter++) {
+            float[] current = centroids;
+            IntStream.range(0, sampleSize).parallel()
+                .forEach(i -> sampleList[i] = nearest(current, lists, dim, train, i * dim));
+            float[] sums = new float[lists * dim];
+            for (int i = 0; i < sampleSize; i++) {
+                int base = sampleList[i] * dim;
+                for (int d = 0; d < dim; d++) {
+                    sums[base + d] += train[i * dim + d];
+                }
+            }
+            for (int l = 0; l < lists; l++) {
+                if (normalise(sums, l * dim, dim) == 0) {
+                    // Empty list: keep the old centroid rather than collapsing it to zero
+                    System.arraycopy(centroids, l * dim, sums, l * dim, dim);
+                }
+            }
+            centroids = sums;
+        }
+
+        // Assign every clue to its closest list
+        float[] trained = centroids;
+        int[] listOf = new int[rows.length];
+        float[] scaleOf = new float[rows.length];
+        IntStream.range(0, rows.length).parallel().forEach(i -> {
+            float[] vec = store.vector(rows[i]);
+            scaleOf[i] = normalise(vec, 0, dim);
+            listOf[i] = nearest(trained, lists, dim, vec, 0);
+        });
+        int[] listStart = new int[lists + 1];
+        for (int l : listOf) {
+            listStart[l + 1]++;
+        }
+        for (int l = 0; l < lists; l++) {
+            listStart[l + 1] += listStart[l];
+        }
+        int[] fill = Arrays.copyOf(listStart, lists);
+        int[] listRows = new int[rows.length];
+        float[] rowScale = new float[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int slot = fill[listOf[i]]++;
+            listRows[slot] = rows[i];
+            rowScale[slot] = scaleOf[i];
+        }
+        return new ClueIndex(store, lists, centroids, listStart, listRows, rowScale);
+    }
+
+    // Store rows of the K clues closest to query (any length; it is normalised here),
+    // searching the nprobe closest lists. Best match first.
+    int[] search(float[] query, int k, int nprobe) {
+        float[] q = query.clone();
+        if (normalise(q, 0, dim) == 0) {
+            return new int[0];
+        }
+
+        // Closest lists by centroid
+        nprobe = Math.min(nprobe, lists);
+        int[] probe = new int[nprobe];
+        float[] probeSim = new float[nprobe];
+        Arrays.fill(probeSim, Float.NEGATIVE_INFINITY);
+        for (int l = 0; l < lists; l++) {
+            float sim = dot(centroids, l * dim, q, 0, dim);
+            if (sim > probeSim[nprobe - 1]) {
+                insert(probe, probeSim, l, sim);
+            }
+        }
+
+        int[] top = new int[k];
+        float[] topSim = new float[k];
+        Arrays.fill(topSim, Float.NEGATIVE_INFINITY);
+        int found = 0;
+        float[] vec = new float[dim];
+        for (int p = 0; p < nprobe; p++) {
+            if (probeSim[p] == Float.NEGATIVE_INFINITY) break;
+            int list = probe[p];
+            for (int i = listStart[list]; i < listStart[list + 1]; i++) {
+                store.read(listRows[i], vec);
+                float sim = dot(vec, 0, q, 0, dim) * rowScale[i];
+                if (sim > topSim[k - 1]) {
+                    insert(top, topSim, listRows[i], sim);
+                    found = Math.min(k, found + 1);
+                }
+            }
+        }
+        return Arrays.copyOf(top, found);
+    }
+
+    int size() {
+        return listRows.length;
+    }
+
+    int listCount() {
+        return lists;
+    }
+
+    void save(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + (centroids.length + listStart.length + listRows.length * 2) * 4)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(store.fingerprint())
+            .putInt(dim).putInt(store.size()).putInt(lists).putInt(listRows.length);
+        buf.asFloatBuffer().put(centroids);
+        buf.position(buf.position() + centroids.length * 4);
+        buf.asIntBuffer().put(listStart);
+        buf.position(buf.position() + listStart.length * 4);
+        buf.asIntBuffer().put(listRows);
+        buf.position(buf.position() + listRows.length * 4);
+        buf.asFloatBuffer().put(rowScale);
+        buf.position(buf.capacity());
+        buf.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    static ClueIndex load(EmbeddingStore store, Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException(path + " is not a version " + VERSION + " clue index");
+        }
+        long fingerprint = buf.getLong();
+        int dim = buf.getInt();
+        int storeRows = buf.getInt();
+        int lists = buf.getInt();
+        int rows = buf.getInt();
+        if (fingerprint != store.fingerprint() || dim != store.dim() || storeRows != store.size() || rows != store.getClues().size()) {
+            throw new IOException(path + " was built for a different embedding store");
+        }
+        if (buf.remaining() != ((long) lists * dim + lists + 1 + rows * 2L) * 4) {
+            throw new IOException(path + " is truncated");
+        }
+        float[] centroids = new float[lists * dim];
+        buf.asFloatBuffer().get(centroids);
+        buf.position(buf.position() + centroids.length * 4);
+        int[] listStart = new int[lists + 1];
+        buf.asIntBuffer().get(listStart);
+        buf.position(buf.position() + listStart.length * 4);
+        int[] listRows = new int[rows];
+        buf.asIntBuffer().get(listRows);
+        buf.position(buf.position() + listRows.length * 4);
+        float[] rowScale = new float[rows];
+        buf.asFloatBuffer().get(rowScale);
+        return new ClueIndex(store, lists, centroids, listStart, listRows, rowScale);
+    }
+
+    private static int[] clueRows(EmbeddingStore store) {
+        List<String> clues = store.getClues();
+        int[] rows = new int[clues.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = store.row(clues.get(i));
+        }
+        return rows;
+    }
+
+    // Normalised copy of a row; not the store's shared cache, so a build does not pin every vector
+    private static float[] unit(EmbeddingStore store, int row) {
+        float[] vec = store.vector(row);
+        normalise(vec, 0, vec.length);
+        return vec;
+    }
+
+    private static int nearest(float[] centroids, int lists, int dim, float[] vec, int offset) {
+        int best = 0;
+        float bestSim = Float.NEGATIVE_INFINITY;
+        for (int l = 0; l < lists; l++) {
+            float sim = dot(centroids, l * dim, vec, offset, dim);
+            if (sim > bestSim) {
+                bestSim = sim;
+                best = l;
+            }
+        }
+        return best;
+    }
+
+    // Insertion into a descending top-N list whose last slot is the current cut-off
+    private static void insert(int[] ids, float[] sims, int id, float sim) {
+        int i = sims.length - 1;
+        while (i > 0 && sims[i - 1] < sim) {
+            ids[i] = ids[i - 1];
+            sims[i] = sims[i - 1];
+            i--;
+        }
+        ids[i] = id;
+        sims[i] = sim;
+    }
+
+    private static float dot(float[] a, int aOffset, float[] b, int bOffset, int dim) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < dim; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < dim; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // Scales a vector to unit length in place and returns the factor used (0 for a zero vector)
+    private static float normalise(float[] v, int offset, int dim) {
+        double norm = 0;
+        for (int d = 0; d < dim; d++) {
+            norm += v[offset + d] * v[offset + d];
+        }
+        if (norm == 0) {
+            return 0;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int d = 0; d < dim; d++) {
+            v[offset + d] *= scale;
+        }
+        return scale;
+    }
+}
@@ -0,0 +1,250 @@
+//ClueSearch.java
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+// Lookahead spymaster. The static score only guesses at what a clue will do, so
+// this plays the top few clues out instead: each rollout is a simulated
+// operative who reads the clue with some noise and guesses down its list until
+// it has used the number or hits a card that is not its own. A clue is worth
+// its mean net cards (own minus opponent's), with the assassin costing a game.
+//
+// Rollouts run on the common fork-join pool in rounds, every candidate getting
+// the same share each round, and the search stops at the time budget with
+// whatever rounds have finished. Enabled with -Dcodenames.searchMs=N.
+final class ClueSearch {
+    static final int DEFAULT_CANDIDATES = 8;
+    static final int DEFAULT_ROLLOUTS = 512;
+    private static final int ROLLOUTS_PER_ROUND = 64;
+    private static final int ROLLOUTS_PER_TASK = 16;
+    private static final double ASSASSIN_COST = 9;  // about what the rest of a lost game was worth
+    private static final double READ_NOISE = 0.25;  // operative misreading, as a fraction of the clue's similarity spread
+
+    static final class Candidate {
+        final Hint hint;
+        final int rollouts;
+        final double expected;     // mean net cards
+        final double assassinRate;
+
+        Candidate(Hint hint, int rollouts, double expected, double assassinRate) {
+            this.hint = hint;
+            this.rollouts = rollouts;
+            this.expected = expected;
+            this.assassinRate = assassinRate;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %+.3f net, %.2f%% assassin over %d rollouts", hint, expected, 100 * assassinRate, rollouts);
+        }
+    }
+
+    private final HintEngine engine;
+    private final int candidates;
+    private final int rollouts;
+    private final long budgetNanos;
+
+    ClueSearch(HintEngine engine, int candidates, int rollouts, long budgetMillis) {
+        this.engine = engine;
+        this.candidates = candidates;
+        this.rollouts = rollouts;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    // Null unless -Dcodenames.searchMs is set (-Dcodenames.searchClues, -Dcodenames.searchRollouts)
+    static ClueSearch fromProperties(HintEngine engine) {
+        long budget = Long.getLong("codenames.searchMs", 0);
+        if (budget <= 0) {
+            return null;
+        }
+        return new ClueSearch(engine, Integer.getInteger("codenames.searchClues", DEFAULT_CANDIDATES),
+            Integer.getInteger("codenames.searchRollouts", DEFAULT_ROLLOUTS), budget);
+    }
+
+    HintEngine getEngine() {
+        return engine;
+    }
+
+    Hint suggest(CodenamesBoard board, String team, RiskProfile risk, Random rnd) {
+        List<Candidate> ranked = evaluate(board, team, risk, rnd.nextLong());
+        if (ranked.isEmpty()) {
+            return engine.suggest(board, team, risk, rnd); // every clue vetoed, or no targets left
+        }
+        return ranked.get(0).hint;
+    }
+
+    // The top candidate clues, best expected outcome first
+    List<Candidate> evaluate(CodenamesBoard board, String team, RiskProfile risk, long seed) {
+        long deadline = System.nanoTime() + budgetNanos;
+        CodenamesBoard snapshot = board.copy(); // the caller's board may move on while rollouts run
+        List<Hint> hints = engine.topHints(snapshot, team, risk, candidates);
+        Position position = new Position(snapshot, Team.of(team));
+        List<float[]> sims = new ArrayList<>();
+        List<Hint> playable = new ArrayList<>();
+        for (Hint hint : hints) {
+            float[] s = position.clueSims(engine.getStore(), hint.clue);
+            if (s != null) {
+                sims.add(s);
+                playable.add(hint);
+            }
+        }
+        int n = playable.size();
+        Tally[] totals = new Tally[n];
+        for (int i = 0; i < n; i++) {
+            totals[i] = new Tally();
+        }
+
+        List<Rollouts> round = new ArrayList<>(n);
+        for (int done = 0; done < rollouts && (done == 0 || System.nanoTime() < deadline); done += ROLLOUTS_PER_ROUND) {
+            HintEngine.checkInterrupted();
+            int count = Math.min(ROLLOUTS_PER_ROUND, rollouts - done);
+            round.clear();
+            for (int i = 0; i < n; i++) {
+                // Fixed per candidate and round, so a run without a cut-off is reproducible
+                long taskSeed = seed + 1_000_003L * done + i;
+                round.add(new Rollouts(position, sims.get(i), playable.get(i).number, count, taskSeed, deadline));
+            }
+            for (Rollouts task : round) {
+                ForkJoinPool.commonPool().execute(task);
+            }
+            for (int i = 0; i < n; i++) {
+                totals[i].add(round.get(i).join());
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Tally t = totals[i];
+            if (t.rollouts > 0) {
+                result.add(new Candidate(playable.get(i), t.rollouts, t.net / t.rollouts, (double) t.assassins / t.rollouts));
+            }
+        }
+        // Stable, so equal outcomes keep the static score's order
+        result.sort((a, b) -> Double.compare(b.expected, a.expected));
+        return result;
+    }
+
+    // What a rollout needs to know about the board, read once from the snapshot
+    private static final class Position {
+        final CodenamesBoard board;
+        final long unrevealed;
+        final long own;
+        final long opponent;
+        final int assassin;
+
+        Position(CodenamesBoard board, byte team) {
+            this.board = board;
+            unrevealed = board.getUnrevealedMask();
+            own = board.teamMask(team) & unrevealed;
+            opponent = board.teamMask(Team.other(team)) & unrevealed;
+            assassin = board.getAssassinCard();
+        }
+
+        // Clue similarity of every card, or null if the clue has no embedding
+        float[] clueSims(EmbeddingStore store, String clue) {
+            int row = store.row(clue.toLowerCase());
+            if (row < 0) row = store.row(clue);
+            if (row < 0) return null;
+            float[] clueVec = store.unitVector(row);
+            float[] sims = new float[board.size()];
+            for (int card = 0; card < sims.length; card++) {
+                int cardRow = store.row(board.wordAt(card));
+                sims[card] = cardRow < 0 ? Float.NEGATIVE_INFINITY : SimilarityMatrix.dot(clueVec, store.unitVector(cardRow));
+            }
+            return sims;
+        }
+    }
+
+    private static final class Tally {
+        int rollouts;
+        double net;
+        int assassins;
+
+        void add(Tally other) {
+            rollouts += other.rollouts;
+            net += other.net;
+            assassins += other.assassins;
+        }
+    }
+
+    // A batch of rollouts of one clue, split until each piece is small
+    private static final class Rollouts extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        final Position position;
+        final float[] sims;
+        final int number;
+        final int count;
+        final long seed;
+        final long deadline;
+
+        Rollouts(Position position, float[] sims, int number, int count, long seed, long deadline) {
+            this.position = position;
+            this.sims = sims;
+            this.number = number;
+            this.count = count;
+            this.seed = seed;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (count > ROLLOUTS_PER_TASK) {
+                int half = count / 2;
+                Rollouts left = new Rollouts(position, sims, number, half, seed, deadline);
+                Rollouts right = new Rollouts(position, sims, number, count - half, seed * 31 + half, deadline);
+                left.fork();
+                Tally tally = right.compute();
+                tally.add(left.join());
+                return tally;
+            }
+
+            SplittableRandom rnd = new SplittableRandom(seed);
+            float lo = Float.POSITIVE_INFINITY;
+            float hi = Float.NEGATIVE_INFINITY;
+            for (long m = position.unrevealed; m != 0; m &= m - 1) {
+                float s = sims[Long.numberOfTrailingZeros(m)];
+                lo = Math.min(lo, s);
+                hi = Math.max(hi, s);
+            }
+            double noise = READ_NOISE * (hi - lo);
+            double[] perceived = new double[sims.length];
+
+            Tally tally = new Tally();
+            for (int r = 0; r < count; r++) {
+                // The first rollout of every task always runs, so each round counts
+                if (r > 0 && System.nanoTime() > deadline) {
+                    break;
+                }
+                for (long m = position.unrevealed; m != 0; m &= m - 1) {
+                    int card = Long.numberOfTrailingZeros(m);
+                    perceived[card] = sims[card] + noise * rnd.nextGaussian();
+                }
+                tally.rollouts++;
+                long left = position.unrevealed;
+                for (int guess = 0; guess < number && left != 0; guess++) {
+                    int pick = -1;
+                    for (long m = left; m != 0; m &= m - 1) {
+                        int card = Long.numberOfTrailingZeros(m);
+                        if (pick < 0 || perceived[card] > perceived[pick]) pick = card;
+                    }
+                    left &= ~(1L << pick);
+                    if ((position.own & (1L << pick)) != 0) {
+                        tally.net++;
+                        continue;
+                    }
+                    if (pick == position.assassin) {
+                        tally.net -= ASSASSIN_COST;
+                        tally.assassins++;
+                    } else if ((position.opponent & (1L << pick)) != 0) {
+                        tally.net--;
+                    }
+                    break;
+                }
+            }
+            return tally;
+        }
+    }
+}
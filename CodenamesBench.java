@@ -0,0 +1,353 @@
+//CodenamesBench.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// Microbenchmarks for the board, state serialization and the hint round trip:
+//   java CodenamesBench [--filter text] [--out bench.json] [--warmup N] [--iterations N] [--time ms]
+//
+// Measures like JMH's throughput (thrpt) and single-shot (ss) modes: warmup
+// iterations first, then timed iterations whose mean and 99.9% error are
+// reported. Results are written as a JSON array shaped like JMH's
+// "-rf json" output so runs can be diffed between releases.
+class CodenamesBench {
+    static volatile Object sink; // keeps results alive so the JIT cannot drop the work
+
+    private static final String SAMPLE_HINT = "{\"clue\": \"OCEAN\", \"number\": 3}";
+
+    // The string-building serializer and indexOf lookup the game used before JsonCodec,
+    // kept verbatim so the json.* benchmarks can show both side by side
+    static final class Legacy {
+        static String stateToJson(CodenamesBoard board, String team, String risk) {
+            StringBuilder json = new StringBuilder();
+            json.append("{\n");
+            json.append("  \"team\": \"").append(team).append("\",\n");
+            json.append("  \"risk\": \"").append(risk).append("\",\n");
+            json.append("  \"red_words\": ").append(listToJsonArray(board.getRedWords())).append(",\n");
+            json.append("  \"blue_words\": ").append(listToJsonArray(board.getBlueWords())).append(",\n");
+            json.append("  \"neutral_words\": ").append(listToJsonArray(board.getNeutralWords())).append(",\n");
+            json.append("  \"assassin\": \"").append(board.getAssassin()).append("\",\n");
+            json.append("  \"revealed\": ").append(listToJsonArray(new ArrayList<>(board.getRevealedWords()))).append("\n");
+            json.append("}");
+            return json.toString();
+        }
+
+        static String listToJsonArray(List<String> list) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < list.size(); i++) {
+                sb.append("\"").append(list.get(i)).append("\"");
+                if (i < list.size() - 1) sb.append(", ");
+            }
+            sb.append("]");
+            return sb.toString();
+        }
+
+        static String extractJsonValue(String json, String key) {
+            String search = "\"" + key + "\":";
+            int start = json.indexOf(search);
+            if (start == -1) return "";
+            start += search.length();
+            while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
+                start++;
+            }
+            if (json.charAt(start) == '"') {
+                start++;
+                int end = json.indexOf("\"", start);
+                if (end == -1) return "";
+                return json.substring(start, end);
+            } else {
+                int end = start;
+                while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}' && json.charAt(end) != ']') {
+                    end++;
+                }
+                return json.substring(start, end).trim();
+            }
+        }
+    }
+
+    interface Op {
+        Object run() throws Exception;
+    }
+
+    private static final class Benchmark {
+        final String name;
+        final boolean singleShot; // each op is slow (process start, model load): time ops one by one
+        final Op op;
+
+        Benchmark(String name, boolean singleShot, Op op) {
+            this.name = name;
+            this.singleShot = singleShot;
+            this.op = op;
+        }
+    }
+
+    private final List<Benchmark> benchmarks = new ArrayList<>();
+    private int warmup = 3;
+    private int iterations = 5;
+    private long iterationMillis = 1000;
+
+    void add(String name, Op op) {
+        benchmarks.add(new Benchmark(name, false, op));
+    }
+
+    void addSingleShot(String name, Op op) {
+        benchmarks.add(new Benchmark(name, true, op));
+    }
+
+    // Ops per second for throughput benchmarks, milliseconds per op for single-shot ones
+    private double measure(Benchmark b) throws Exception {
+        if (b.singleShot) {
+            long start = System.nanoTime();
+            sink = b.op.run();
+            return (System.nanoTime() - start) / 1e6;
+        }
+        long ops = 0;
+        long start = System.nanoTime();
+        long deadline = start + iterationMillis * 1_000_000;
+        long now;
+        do {
+            sink = b.op.run();
+            ops++;
+        } while ((now = System.nanoTime()) < deadline);
+        return ops / ((now - start) / 1e9);
+    }
+
+    List<String> runAll(String filter) {
+        List<String> results = new ArrayList<>();
+        for (Benchmark b : benchmarks) {
+            if (filter != null && !b.name.contains(filter)) continue;
+            System.out.println("# " + b.name);
+            try {
+                for (int i = 0; i < warmup; i++) {
+                    System.out.printf("  warmup %d: %.3f%n", i + 1, measure(b));
+                }
+                double[] scores = new double[iterations];
+                for (int i = 0; i < iterations; i++) {
+                    scores[i] = measure(b);
+                    System.out.printf("  iteration %d: %.3f%n", i + 1, scores[i]);
+                }
+                results.add(toJson(b, scores));
+            } catch (Exception e) {
+                System.out.println("  skipped: " + e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    private String toJson(Benchmark b, double[] scores) {
+        double mean = 0;
+        for (double s : scores) mean += s;
+        mean /= scores.length;
+        double var = 0;
+        for (double s : scores) var += (s - mean) * (s - mean);
+        double error = scores.length > 1 ? 3.29 * Math.sqrt(var / (scores.length - 1)) / Math.sqrt(scores.length) : Double.NaN;
+
+        StringBuilder raw = new StringBuilder("[");
+        for (int i = 0; i < scores.length; i++) {
+            if (i > 0) raw.append(", ");
+            raw.append(scores[i]);
+        }
+        raw.append("]");
+
+        return "  {\n"
+            + "    \"benchmark\": \"" + b.name + "\",\n"
+            + "    \"mode\": \"" + (b.singleShot ? "ss" : "thrpt") + "\",\n"
+            + "    \"warmupIterations\": " + warmup + ",\n"
+            + "    \"measurementIterations\": " + iterations + ",\n"
+            + "    \"primaryMetric\": {\n"
+            + "      \"score\": " + mean + ",\n"
+            + "      \"scoreError\": " + (Double.isNaN(error) ? "null" : String.valueOf(error)) + ",\n"
+            + "      \"scoreUnit\": \"" + (b.singleShot ? "ms/op" : "ops/s") + "\",\n"
+            + "      \"rawData\": " + raw + "\n"
+            + "    }\n"
+            + "  }";
+    }
+
+    private static CodenamesBoard sampleBoard(EmbeddingStore store, Random rnd) {
+        CodenamesBoard board = new CodenamesBoard(store);
+        board.generateBoard("RED", rnd);
+        List<String> words = board.getAllWords();
+        for (int i = 0; i < 6; i++) {
+            board.reveal(words.get(rnd.nextInt(words.size())));
+        }
+        return board;
+    }
+
+    public static void main(String[] args) throws Exception {
+        CodenamesBench bench = new CodenamesBench();
+        String filter = null;
+        String out = "bench-results.json";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--filter":
+                    filter = args[++i];
+                    break;
+                case "--out":
+                    out = args[++i];
+                    break;
+                case "--warmup":
+                    bench.warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    bench.iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--time":
+                    bench.iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown benchmark option: " + args[i]);
+                    return;
+            }
+        }
+
+        EmbeddingStore store = null;
+        try {
+            store = EmbeddingStore.load(codenamesRunner.EMBEDDINGS_FILE);
+        } catch (IOException e) {
+            System.out.println("No embedding store (" + e.getMessage() + "), engine benchmarks will be skipped");
+        }
+        EmbeddingStore embeddings = store;
+        Random rnd = new Random(42);
+        CodenamesBoard board = sampleBoard(null, rnd);
+        String state = codenamesRunner.stateToJson(board, "RED", "NORMAL");
+        byte[] hintBytes = SAMPLE_HINT.getBytes(StandardCharsets.UTF_8);
+        List<String> redWords = board.getRedWords();
+        JsonCodec.Writer writer = new JsonCodec.Writer();
+        JsonCodec.Reader reader = new JsonCodec.Reader();
+        WritableByteChannel discard = new WritableByteChannel() {
+            public int write(ByteBuffer src) {
+                int n = src.remaining();
+                src.position(src.limit());
+                return n;
+            }
+
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void close() {
+            }
+        };
+
+        // Board
+        bench.add("board.generateBoard", () -> {
+            CodenamesBoard b = new CodenamesBoard();
+            b.generateBoard("RED", rnd);
+            return b;
+        });
+        List<String> bigPack = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            bigPack.add("WORD" + i);
+        }
+        WordPack pack = WordPack.of(bigPack);
+        bench.add("board.generateBoard.pack50k", () -> {
+            CodenamesBoard b = new CodenamesBoard(null, pack);
+            b.generateBoard("RED", rnd);
+            return b;
+        });
+        bench.add("board.generateBoardWithSimilarity", () -> {
+            if (embeddings == null) throw new IllegalStateException("needs " + codenamesRunner.EMBEDDINGS_FILE);
+            CodenamesBoard b = new CodenamesBoard(embeddings);
+            b.generateBoard("RED", rnd);
+            return b;
+        });
+        bench.add("board.getRevealedCount", () -> board.getRevealedCount("RED") + board.getRevealedCount("BLUE"));
+        bench.add("board.getWordsByTeam", () -> board.getWordsByTeam("BLUE"));
+        bench.add("board.getUnrevealedWords", board::getUnrevealedWords);
+
+        // Serialization: legacy string building vs the streaming codec
+        bench.add("json.legacy.stateToJson", () -> Legacy.stateToJson(board, "RED", "NORMAL"));
+        bench.add("json.legacy.stateToJsonBytes", () -> Legacy.stateToJson(board, "RED", "NORMAL").getBytes(StandardCharsets.UTF_8));
+        bench.add("json.codec.writeState", () -> {
+            JsonCodec.writeState(writer.reset(), board, "RED", "NORMAL");
+            return writer.length();
+        });
+        bench.add("json.codec.writeStateFrameToChannel", () -> {
+            writer.beginFrame();
+            JsonCodec.writeState(writer, board, "RED", "NORMAL");
+            writer.endFrame().writeTo(discard);
+            return writer.length();
+        });
+        bench.add("json.legacy.listToJsonArray", () -> Legacy.listToJsonArray(redWords));
+        bench.add("json.legacy.extractHint", () -> new Hint(Legacy.extractJsonValue(SAMPLE_HINT, "clue"),
+            Integer.parseInt(Legacy.extractJsonValue(SAMPLE_HINT, "number"))));
+        bench.add("json.codec.readHint", () -> JsonCodec.readHint(reader.reset(hintBytes, 0, hintBytes.length)));
+        bench.add("json.legacy.extractFromState", () -> Legacy.extractJsonValue(state, "assassin"));
+
+        // Hint round trip, in-process engine
+        bench.addSingleShot("hint.engine.cold", () -> {
+            if (embeddings == null) throw new IllegalStateException("needs " + codenamesRunner.EMBEDDINGS_FILE);
+            HintEngine engine = new HintEngine(EmbeddingStore.load(codenamesRunner.EMBEDDINGS_FILE));
+            return engine.suggest(sampleBoard(engine.getStore(), rnd), "RED", RiskProfile.NORMAL, rnd);
+        });
+        HintEngine warmEngine = embeddings == null ? null : new HintEngine(embeddings);
+        CodenamesBoard engineBoard = embeddings == null ? null : sampleBoard(embeddings, rnd);
+        bench.add("hint.engine.warm", () -> {
+            if (warmEngine == null) throw new IllegalStateException("needs " + codenamesRunner.EMBEDDINGS_FILE);
+            return warmEngine.suggest(engineBoard, "RED", RiskProfile.NORMAL, rnd);
+        });
+        // Full rollouts for the default candidates, with a budget it never reaches
+        ClueSearch search = warmEngine == null ? null
+            : new ClueSearch(warmEngine, ClueSearch.DEFAULT_CANDIDATES, ClueSearch.DEFAULT_ROLLOUTS, 60_000);
+        bench.add("hint.search", () -> {
+            if (search == null) throw new IllegalStateException("needs " + codenamesRunner.EMBEDDINGS_FILE);
+            return search.suggest(engineBoard, "RED", RiskProfile.NORMAL, rnd);
+        });
+
+        // Hint round trip through the Python worker, via a HintBatcher set up as the game sets up its own
+        File dir = new File(System.getProperty("user.dir"));
+        long batchDelayMs = Long.getLong("codenames.batchDelayMs", 2);
+        int batchSize = Integer.getInteger("codenames.batchSize", 32);
+        bench.addSingleShot("hint.worker.cold", () -> {
+            HintWorker worker = new HintWorker(codenamesRunner.PYTHON_SCRIPT, dir);
+            HintBatcher coldBatcher = new HintBatcher(worker::requestHints, batchDelayMs, batchSize);
+            try {
+                return coldBatcher.requestHint(board, "RED", "NORMAL");
+            } finally {
+                coldBatcher.shutdown();
+                worker.shutdown();
+            }
+        });
+        HintWorker warmWorker = new HintWorker(codenamesRunner.PYTHON_SCRIPT, dir);
+        HintBatcher gameBatcher = new HintBatcher(warmWorker::requestHints, batchDelayMs, batchSize);
+        bench.addSingleShot("hint.worker.warm", () -> gameBatcher.requestHint(board, "RED", "NORMAL"));
+        // 16 games asking at once: one round trip per game vs one hint_batch frame for all of them
+        bench.addSingleShot("hint.worker.warm.unbatched16", () -> {
+            List<Hint> hints = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                hints.add(gameBatcher.requestHint(board, i % 2 == 0 ? "RED" : "BLUE", "NORMAL"));
+            }
+            return hints;
+        });
+        HintBatcher batcher = new HintBatcher(warmWorker::requestHints, 5, 16);
+        bench.addSingleShot("hint.worker.warm.batched16", () -> {
+            List<CompletableFuture<Hint>> hints = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                hints.add(batcher.submit(board, i % 2 == 0 ? "RED" : "BLUE", "NORMAL"));
+            }
+            for (CompletableFuture<Hint> hint : hints) {
+                hint.get();
+            }
+            return hints;
+        });
+
+        List<String> results = bench.runAll(filter);
+        if (batcher.getBatchCount() > 0) {
+            JsonCodec.Writer metrics = new JsonCodec.Writer();
+            batcher.writeMetrics(metrics);
+            System.out.println("Hint batcher: " + metrics);
+        }
+        batcher.shutdown();
+        gameBatcher.shutdown();
+        warmWorker.shutdown();
+
+        try (FileWriter file = new FileWriter(out)) {
+            file.write("[\n" + String.join(",\n", results) + "\n]\n");
+        }
+        System.out.println("Wrote " + results.size() + " results to " + out);
+    }
+}
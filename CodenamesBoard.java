@@ -0,0 +1,233 @@
+//CodenamesBoard.java
+
+import java.util.*;
+
+// Board logic
+// Cards are indexed 0..24 in board order. Team membership and the revealed set
+// are long bitmasks, so counts are popcounts and a snapshot is a few primitives.
+class CodenamesBoard {
+    static final int SIZE = 25;
+    
+    // Card layout, replaced (never mutated) by generateBoard so copies can share it
+    private String[] words = new String[0];
+    private byte[] teams = new byte[0];
+    private Map<String, Integer> cardIndex = new HashMap<>();
+    private long[] teamMasks = new long[Team.COUNT];
+    private int assassinCard = -1;
+    
+    private long revealedMask;
+    private final EmbeddingStore embeddings;
+    private final WordPack pack;
+    private SimilarityMatrix similarity;
+    
+    // The default pack when there is no words.txt
+    static final List<String> BUILT_IN_WORDS = Arrays.asList(
+        "BRIDGE", "BATTERY", "COMET", "KEY", "OCTOPUS",
+        "RIVER", "MOON", "LIGHTNING", "LOCK", "CIRCUIT",
+        "TABLE", "PAINT", "BOOK", "APPLE", "PENCIL",
+        "SHARK", "CAR", "PLANT", "GLASS", "KNIFE",
+        "BEAR", "COMPUTER", "CHAIR", "PAPER", "DRAGON",
+        "BALL", "STAR", "CROWN", "PICTURE", "VIOLIN",
+        "WINDOW", "GUITAR", "CASTLE", "DIAMOND", "HAMMER",
+        "TIGER", "CLOCK", "BOOT", "SHIP", "BICYCLE"
+    );
+    
+    CodenamesBoard() {
+        this(null);
+    }
+    
+    // With an embedding store the board keeps a clue/card similarity matrix for the hint engine
+    CodenamesBoard(EmbeddingStore embeddings) {
+        this(embeddings, WordPack.getDefault());
+    }
+    
+    CodenamesBoard(EmbeddingStore embeddings, WordPack pack) {
+        this.embeddings = embeddings;
+        this.pack = pack;
+    }
+    
+    static List<String> getWordList() {
+        return WordPack.getDefault().words();
+    }
+    
+    void generateBoard(String startingTeam) {
+        generateBoard(startingTeam, new Random());
+    }
+    
+    void generateBoard(String startingTeam, Random rnd) {
+        // Pick 25 words for 5x5 board; the cost does not depend on the pack size
+        String[] selected = new String[SIZE];
+        pack.sample(selected, rnd);
+        
+        // Assign teams - starting team gets 9, other team gets 8
+        // Distribution: 9 cards to starting team, 8 to other, 7 neutral, 1 assassin
+        int red = startingTeam.equals("RED") ? 9 : 8;
+        int blue = 17 - red;
+        byte[] layout = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            if (i < red) layout[i] = Team.RED;
+            else if (i < red + blue) layout[i] = Team.BLUE;
+            else if (i < red + blue + 7) layout[i] = Team.NEUTRAL;
+            else layout[i] = Team.ASSASSIN;
+        }
+        // Shuffled separately from the words so a team's cards are not always the first positions on the grid
+        for (int i = SIZE - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            byte t = layout[i];
+            layout[i] = layout[j];
+            layout[j] = t;
+        }
+        setLayout(selected, layout);
+    }
+    
+    private void setLayout(String[] newWords, byte[] newTeams) {
+        words = newWords;
+        teams = newTeams;
+        cardIndex = new HashMap<>();
+        teamMasks = new long[Team.COUNT];
+        assassinCard = -1;
+        for (int i = 0; i < words.length; i++) {
+            cardIndex.put(words[i], i);
+            teamMasks[teams[i]] |= 1L << i;
+            if (teams[i] == Team.ASSASSIN) assassinCard = i;
+        }
+        revealedMask = 0;
+        
+        similarity = null;
+        if (embeddings != null && SimilarityMatrix.fits(embeddings)) {
+            similarity = new SimilarityMatrix(embeddings, this);
+        }
+    }
+    
+    // Identifies the dealt layout, so a journal can tell that a seed still deals the same board
+    int layoutHash() {
+        return 31 * Arrays.hashCode(words) + Arrays.hashCode(teams);
+    }
+    
+    // Snapshot sharing the immutable layout; only the revealed mask (and matrix sums) are copied
+    CodenamesBoard copy() {
+        CodenamesBoard copy = new CodenamesBoard(embeddings, pack);
+        copy.words = words;
+        copy.teams = teams;
+        copy.cardIndex = cardIndex;
+        copy.teamMasks = teamMasks;
+        copy.assassinCard = assassinCard;
+        copy.revealedMask = revealedMask;
+        copy.similarity = similarity == null ? null : similarity.copy();
+        return copy;
+    }
+    
+    SimilarityMatrix getSimilarity() {
+        return similarity;
+    }
+    
+    int size() {
+        return words.length;
+    }
+    
+    // Card index of a word, or -1 if it is not on the board
+    int indexOf(String word) {
+        Integer card = cardIndex.get(word);
+        return card == null ? -1 : card;
+    }
+    
+    String wordAt(int card) {
+        return words[card];
+    }
+    
+    byte teamAt(int card) {
+        return teams[card];
+    }
+    
+    long teamMask(byte team) {
+        return teamMasks[team];
+    }
+    
+    long getRevealedMask() {
+        return revealedMask;
+    }
+    
+    long getUnrevealedMask() {
+        return ~revealedMask & ((1L << words.length) - 1);
+    }
+    
+    int getAssassinCard() {
+        return assassinCard;
+    }
+    
+    List<String> getAllWords() {
+        return new ArrayList<>(Arrays.asList(words));
+    }
+    
+    List<String> getRedWords() {
+        return getWordsByTeam("RED");
+    }
+    
+    List<String> getBlueWords() {
+        return getWordsByTeam("BLUE");
+    }
+    
+    List<String> getNeutralWords() {
+        return getWordsByTeam("NEUTRAL");
+    }
+    
+    List<String> getWordsByTeam(String team) {
+        return wordsIn(teamMasks[Team.of(team)]);
+    }
+    
+    String getAssassin() {
+        return assassinCard < 0 ? "" : words[assassinCard];
+    }
+    
+    String getCardTeam(String word) {
+        int card = indexOf(word);
+        return card < 0 ? "NEUTRAL" : Team.name(teams[card]);
+    }
+    
+    void reveal(String word) {
+        int card = indexOf(word);
+        if (card >= 0) revealCard(card);
+    }
+    
+    void revealCard(int card) {
+        long bit = 1L << card;
+        if ((revealedMask & bit) != 0) return;
+        revealedMask |= bit;
+        if (similarity != null) {
+            similarity.reveal(card);
+        }
+    }
+    
+    boolean isRevealed(String word) {
+        int card = indexOf(word);
+        return card >= 0 && isCardRevealed(card);
+    }
+    
+    boolean isCardRevealed(int card) {
+        return (revealedMask & (1L << card)) != 0;
+    }
+    
+    List<String> getUnrevealedWords() {
+        return wordsIn(getUnrevealedMask());
+    }
+    
+    int getUnrevealedCount() {
+        return Long.bitCount(getUnrevealedMask());
+    }
+    
+    int getRevealedCount(String team) {
+        return Long.bitCount(teamMasks[Team.of(team)] & revealedMask);
+    }
+    
+    Set<String> getRevealedWords() {
+        return new HashSet<>(wordsIn(revealedMask));
+    }
+    
+    private List<String> wordsIn(long mask) {
+        List<String> result = new ArrayList<>(Long.bitCount(mask));
+        for (long m = mask; m != 0; m &= m - 1) {
+            result.add(words[Long.numberOfTrailingZeros(m)]);
+        }
+        return result;
+    }
+}
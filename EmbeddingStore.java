@@ -0,0 +1,325 @@
+//EmbeddingStore.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Precomputed sentence embeddings for the board words and candidate clues,
+// as written by "python3 codenamesAI.py --export <file> <words...>".
+//
+// File layout (little-endian), opened memory-mapped so the page cache is
+// shared by every process reading the same file:
+//   header  "CNEM", int version, int dim, int rows, int dataOffset
+//   index   per row: byte kind ('W' board word, 'C' candidate clue), short length, UTF-8 word
+//   data    rows * dim float32, starting at dataOffset (64-byte aligned)
+//
+// Version 2 stores hold each row as an L2-normalised vector quantized to int8
+// with one float scale per row: rows * dim int8 at dataOffset, then rows float32
+// scales at the next 64-byte boundary. A quarter of the size; cosines between
+// rows are integer dot products (cosine()). Made with
+//   java EmbeddingStore --quantize embeddings.bin embeddings-int8.bin
+class EmbeddingStore {
+    static final int MAGIC = 0x4D454E43; // "CNEM"
+    static final int VERSION = 1;
+    static final int QUANTIZED_VERSION = 2;
+    static final int HEADER_BYTES = 20;
+
+    private final int dim;
+    private final int rows;
+    private final FloatBuffer data;     // version 1
+    private final ByteBuffer quantized; // version 2
+    private final float[] scales;
+    private final byte[] kinds;
+    private final String[] words;
+    private final Map<String, Integer> rowIndex;
+    private final List<String> clues = new ArrayList<>();
+    private final AtomicReferenceArray<float[]> unitCache;
+    private final Path path;
+    private final ByteBuffer mapping;
+    private final long fingerprint;
+
+    private EmbeddingStore(ByteBuffer buf, Path path) throws IOException {
+        this.path = path;
+        this.mapping = buf;
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt() != MAGIC) {
+            throw new IOException("Not an embedding store");
+        }
+        int version = buf.getInt();
+        if (version != VERSION && version != QUANTIZED_VERSION) {
+            throw new IOException("Unsupported embedding store version " + version);
+        }
+        dim = buf.getInt();
+        rows = buf.getInt();
+        int dataOffset = buf.getInt();
+
+        words = new String[rows];
+        kinds = new byte[rows];
+        unitCache = new AtomicReferenceArray<>(rows);
+        rowIndex = new HashMap<>(rows * 2);
+        for (int row = 0; row < rows; row++) {
+            byte kind = buf.get();
+            kinds[row] = kind;
+            byte[] utf8 = new byte[buf.getShort() & 0xFFFF];
+            buf.get(utf8);
+            words[row] = new String(utf8, StandardCharsets.UTF_8);
+            rowIndex.putIfAbsent(words[row], row);
+            if (kind == 'C') {
+                clues.add(words[row]);
+            }
+        }
+
+        if (version == QUANTIZED_VERSION) {
+            int scaleOffset = align(dataOffset + rows * dim);
+            if ((long) scaleOffset + (long) rows * Float.BYTES > buf.capacity()) {
+                throw new IOException("Embedding store is truncated");
+            }
+            buf.position(dataOffset);
+            quantized = buf.slice().limit(rows * dim);
+            scales = new float[rows];
+            buf.position(scaleOffset);
+            buf.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(scales);
+            data = null;
+        } else {
+            if ((long) dataOffset + (long) rows * dim * Float.BYTES > buf.capacity()) {
+                throw new IOException("Embedding store is truncated");
+            }
+            buf.position(dataOffset);
+            data = buf.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            quantized = null;
+            scales = null;
+        }
+
+        long h = clues.hashCode();
+        h = h * 31 + rows;
+        h = h * 31 + dim;
+        h = h * 31 + version;
+        if (path != null) {
+            h = h * 31 + Files.getLastModifiedTime(path).toMillis();
+            h = h * 31 + Files.size(path);
+        }
+        fingerprint = h;
+    }
+
+    static EmbeddingStore load(String path) throws IOException {
+        return load(Paths.get(path));
+    }
+
+    static EmbeddingStore load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new EmbeddingStore(buf, path);
+        }
+    }
+
+    // Faults the whole mapping in now, so the first clue does not pay for page faults row by row
+    void preload() {
+        if (mapping instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) mapping).load();
+        }
+    }
+
+    // File the store was mapped from; sidecar files such as the clue index live next to it
+    Path getPath() {
+        return path;
+    }
+
+    // Changes whenever the store is re-exported: clue list, shape, format and, for a mapped
+    // file, its size and modification time. Sidecar files keep it to tell when they are stale.
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    int dim() {
+        return dim;
+    }
+
+    int size() {
+        return rows;
+    }
+
+    boolean isQuantized() {
+        return quantized != null;
+    }
+
+    // Bytes of vector data, whatever the format
+    long dataBytes() {
+        return quantized != null ? (long) rows * (dim + Float.BYTES) : (long) rows * dim * Float.BYTES;
+    }
+
+    String word(int row) {
+        return words[row];
+    }
+
+    // Row for a word, or -1 if it was not exported
+    int row(String word) {
+        Integer row = rowIndex.get(word);
+        return row == null ? -1 : row;
+    }
+
+    float[] vector(int row) {
+        float[] vec = new float[dim];
+        read(row, vec);
+        return vec;
+    }
+
+    // Bulk copy of a row into a caller-owned buffer, for scans that must not allocate per row
+    void read(int row, float[] dst) {
+        if (quantized == null) {
+            data.get(row * dim, dst, 0, dim);
+            return;
+        }
+        int base = row * dim;
+        float scale = scales[row];
+        for (int i = 0; i < dim; i++) {
+            dst[i] = quantized.get(base + i) * scale;
+        }
+    }
+
+    // Raw int8 row of a quantized store; times scale(row) it is the unit vector
+    void readQuantized(int row, byte[] dst) {
+        quantized.get(row * dim, dst, 0, dim);
+    }
+
+    float scale(int row) {
+        return scales[row];
+    }
+
+    // L2-normalised copy of a row, computed once and shared by every board
+    float[] unitVector(int row) {
+        float[] unit = unitCache.get(row);
+        if (unit == null) {
+            unit = vector(row);
+            double norm = 0;
+            for (float v : unit) norm += v * v;
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < unit.length; i++) {
+                unit[i] *= scale;
+            }
+            unitCache.compareAndSet(row, null, unit);
+        }
+        return unit;
+    }
+
+    // Dot product straight off the mapping, without copying the row
+    double dot(int row, float[] other) {
+        int base = row * dim;
+        double sum = 0;
+        if (quantized != null) {
+            for (int i = 0; i < dim; i++) {
+                sum += quantized.get(base + i) * other[i];
+            }
+            return sum * scales[row];
+        }
+        for (int i = 0; i < dim; i++) {
+            sum += data.get(base + i) * other[i];
+        }
+        return sum;
+    }
+
+    // Cosine similarity of two rows: an integer dot product for quantized stores
+    float cosine(int a, int b) {
+        if (quantized == null) {
+            return SimilarityMatrix.dot(unitVector(a), unitVector(b));
+        }
+        byte[] qa = new byte[dim];
+        byte[] qb = new byte[dim];
+        readQuantized(a, qa);
+        readQuantized(b, qb);
+        return SimilarityMatrix.dot(qa, qb) * scales[a] * scales[b];
+    }
+
+    List<String> getClues() {
+        return Collections.unmodifiableList(clues);
+    }
+
+    // Writes a store in the layout above; the Python exporter produces the same bytes
+    static void write(Path path, List<String> words, List<Character> kinds, List<float[]> vectors) throws IOException {
+        write(path, words, kinds, vectors, false);
+    }
+
+    // Writes a version 2 store: every vector normalised, then scaled so its largest component is +-127
+    static void writeQuantized(Path path, List<String> words, List<Character> kinds, List<float[]> vectors) throws IOException {
+        write(path, words, kinds, vectors, true);
+    }
+
+    private static void write(Path path, List<String> words, List<Character> kinds, List<float[]> vectors, boolean quantize) throws IOException {
+        int dim = vectors.isEmpty() ? 0 : vectors.get(0).length;
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        for (int i = 0; i < words.size(); i++) {
+            byte[] utf8 = words.get(i).getBytes(StandardCharsets.UTF_8);
+            index.write(kinds.get(i));
+            index.write(utf8.length & 0xFF);
+            index.write((utf8.length >> 8) & 0xFF);
+            index.write(utf8, 0, utf8.length);
+        }
+        int dataOffset = align(HEADER_BYTES + index.size());
+
+        int scaleOffset = align(dataOffset + words.size() * dim);
+        int size = quantize ? scaleOffset + words.size() * Float.BYTES : dataOffset + words.size() * dim * Float.BYTES;
+
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(quantize ? QUANTIZED_VERSION : VERSION).putInt(dim).putInt(words.size()).putInt(dataOffset);
+        buf.put(index.toByteArray());
+        buf.position(dataOffset);
+        if (quantize) {
+            for (int row = 0; row < vectors.size(); row++) {
+                float[] unit = HintEngine.unit(vectors.get(row).clone());
+                float max = 0;
+                for (float v : unit) max = Math.max(max, Math.abs(v));
+                float scale = max == 0 ? 1 : max / 127;
+                for (float v : unit) {
+                    buf.put((byte) Math.round(v / scale));
+                }
+                buf.putFloat(scaleOffset + row * Float.BYTES, scale);
+            }
+        } else {
+            for (float[] vec : vectors) {
+                for (float v : vec) {
+                    buf.putFloat(v);
+                }
+            }
+        }
+        buf.position(0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + 63) & ~63;
+    }
+
+    // Converts a store to the quantized format: java EmbeddingStore --quantize IN OUT
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3 || !args[0].equals("--quantize")) {
+            System.out.println("Usage: java EmbeddingStore --quantize <in> <out>");
+            return;
+        }
+        EmbeddingStore in = load(args[1]);
+        List<String> words = new ArrayList<>(in.rows);
+        List<Character> kinds = new ArrayList<>(in.rows);
+        List<float[]> vectors = new ArrayList<>(in.rows);
+        for (int row = 0; row < in.rows; row++) {
+            words.add(in.words[row]);
+            kinds.add((char) in.kinds[row]);
+            vectors.add(in.vector(row));
+        }
+        // Read fully before writing, so the input and output may be the same file
+        writeQuantized(Paths.get(args[2]), words, kinds, vectors);
+        System.out.println("Quantized " + in.rows + " x " + in.dim + " embeddings: "
+            + in.dataBytes() + " -> " + load(args[2]).dataBytes() + " bytes of vector data");
+    }
+}
@@ -0,0 +1,78 @@
+//FallbackHints.java
+
+import java.util.*;
+
+// Instant clues that need no model or embeddings, used when the real hint
+// engine misses its deadline. The clue is the category covering the most of
+// the team's unrevealed cards, skipping any category that would also point at
+// the assassin. Words outside the small category table (most of a word pack)
+// count for nothing. When no safe category is left there is no honest clue to
+// give, so the answer is Hint.NO_CLUE rather than a made-up one.
+final class FallbackHints {
+    private static final Map<String, String> CATEGORY = new HashMap<>();
+
+    static {
+        category("space", "COMET", "MOON", "STAR");
+        category("energy", "BATTERY", "CIRCUIT", "LIGHTNING");
+        category("ocean", "OCTOPUS", "SHARK", "SHIP");
+        category("nature", "RIVER", "PLANT");
+        category("metal", "KEY", "LOCK");
+        category("wood", "TABLE", "CHAIR");
+        category("art", "PAINT", "PICTURE");
+        category("school", "BOOK", "PENCIL", "PAPER");
+        category("food", "APPLE");
+        category("vehicle", "CAR", "BICYCLE");
+        category("material", "GLASS", "WINDOW", "DIAMOND");
+        category("weapon", "KNIFE");
+        category("tool", "HAMMER");
+        category("animal", "BEAR", "TIGER");
+        category("machine", "COMPUTER", "CLOCK");
+        category("myth", "DRAGON");
+        category("sport", "BALL", "BOOT");
+        category("history", "CROWN", "CASTLE", "BRIDGE");
+        category("music", "VIOLIN", "GUITAR");
+    }
+
+    private FallbackHints() {
+    }
+
+    private static void category(String clue, String... words) {
+        for (String word : words) {
+            CATEGORY.put(word, clue);
+        }
+    }
+
+    static Hint suggest(CodenamesBoard board, String team) {
+        long targets = board.teamMask(Team.of(team)) & board.getUnrevealedMask();
+        if (targets == 0) {
+            return Hint.GAME_OVER;
+        }
+        int assassin = board.getAssassinCard();
+        String blocked = assassin >= 0 && !board.isCardRevealed(assassin) ? categoryOf(board.wordAt(assassin)) : null;
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (long m = targets; m != 0; m &= m - 1) {
+            String category = categoryOf(board.wordAt(Long.numberOfTrailingZeros(m)));
+            if (category != null) {
+                counts.merge(category, 1, Integer::sum);
+            }
+        }
+        String best = null;
+        int bestCount = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (!entry.getKey().equals(blocked) && entry.getValue() > bestCount) {
+                best = entry.getKey();
+                bestCount = entry.getValue();
+            }
+        }
+        if (best == null) {
+            return Hint.NO_CLUE;
+        }
+        return new Hint(best.toUpperCase(), bestCount);
+    }
+
+    // Null for words outside the table
+    private static String categoryOf(String word) {
+        return CATEGORY.get(word.toUpperCase());
+    }
+}
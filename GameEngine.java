@@ -0,0 +1,165 @@
+//GameEngine.java
+
+import java.util.Random;
+
+// Turn and win-condition rules of a game, with no UI attached. The Swing
+// runner and the headless simulator both drive games through this class.
+class GameEngine {
+    enum Outcome {
+        CORRECT(false, false),                // own card, guesses left
+        CORRECT_OUT_OF_GUESSES(true, false),  // own card, turn ends
+        WRONG(true, false),                   // opponent or neutral card, turn ends
+        ASSASSIN(true, true),                 // guessing team loses
+        WIN(true, true),                      // a team has revealed all its cards
+        IGNORED(false, false);                // not a legal guess right now
+
+        final boolean endsTurn;
+        final boolean endsGame;
+
+        Outcome(boolean endsTurn, boolean endsGame) {
+            this.endsTurn = endsTurn;
+            this.endsGame = endsGame;
+        }
+    }
+
+    private final CodenamesBoard board;
+    private String startingTeam = "RED";
+    private String currentTeam = "RED";
+    private int guessesRemaining = 0;
+    private boolean active = false;
+    private String winner = null;
+    private boolean assassinHit = false;
+    private int turns = 0;
+
+    GameEngine(CodenamesBoard board) {
+        this.board = board;
+    }
+
+    void newGame(String startingTeam, Random rnd) {
+        board.generateBoard(startingTeam, rnd);
+        this.startingTeam = startingTeam;
+        currentTeam = startingTeam;
+        guessesRemaining = 0;
+        active = true;
+        winner = null;
+        assassinHit = false;
+        turns = 1;
+    }
+
+    // The same position on a copy of the board, so a move can be tried without touching this game
+    GameEngine copy() {
+        GameEngine copy = new GameEngine(board.copy());
+        copy.startingTeam = startingTeam;
+        copy.currentTeam = currentTeam;
+        copy.guessesRemaining = guessesRemaining;
+        copy.active = active;
+        copy.winner = winner;
+        copy.assassinHit = assassinHit;
+        copy.turns = turns;
+        return copy;
+    }
+
+    // Puts a game dealt with newGame back into a recorded mid-game position
+    void restore(String currentTeam, int guessesRemaining, int turns, boolean active, String winner, boolean assassinHit) {
+        this.currentTeam = currentTeam;
+        this.guessesRemaining = guessesRemaining;
+        this.turns = turns;
+        this.active = active;
+        this.winner = winner;
+        this.assassinHit = assassinHit;
+    }
+
+    // A clue for N allows N + 1 guesses (the bonus guess)
+    void applyHint(Hint hint) {
+        guessesRemaining = hint.number + 1;
+    }
+
+    Outcome guess(String word) {
+        if (!active || guessesRemaining <= 0 || board.isRevealed(word)) {
+            return Outcome.IGNORED;
+        }
+
+        board.reveal(word);
+        guessesRemaining--;
+        String team = board.getCardTeam(word);
+
+        if (team.equals("ASSASSIN")) {
+            assassinHit = true;
+            finish(otherTeam(currentTeam));
+            return Outcome.ASSASSIN;
+        }
+
+        // Either team can finish on this reveal, including the opponent on a wrong guess
+        if (board.getRevealedCount("RED") == targetFor("RED")) {
+            finish("RED");
+            return Outcome.WIN;
+        }
+        if (board.getRevealedCount("BLUE") == targetFor("BLUE")) {
+            finish("BLUE");
+            return Outcome.WIN;
+        }
+
+        if (!team.equals(currentTeam)) {
+            return Outcome.WRONG;
+        }
+        return guessesRemaining > 0 ? Outcome.CORRECT : Outcome.CORRECT_OUT_OF_GUESSES;
+    }
+
+    void endTurn() {
+        if (!active) return;
+        currentTeam = otherTeam(currentTeam);
+        guessesRemaining = 0;
+        turns++;
+    }
+
+    void resetGuesses() {
+        guessesRemaining = 0;
+    }
+
+    // Starting team has 9 cards, the other team 8
+    int targetFor(String team) {
+        return team.equals(startingTeam) ? 9 : 8;
+    }
+
+    static String otherTeam(String team) {
+        return team.equals("RED") ? "BLUE" : "RED";
+    }
+
+    private void finish(String winningTeam) {
+        winner = winningTeam;
+        active = false;
+        guessesRemaining = 0;
+    }
+
+    CodenamesBoard getBoard() {
+        return board;
+    }
+
+    String getStartingTeam() {
+        return startingTeam;
+    }
+
+    String getCurrentTeam() {
+        return currentTeam;
+    }
+
+    int getGuessesRemaining() {
+        return guessesRemaining;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    String getWinner() {
+        return winner;
+    }
+
+    boolean isAssassinHit() {
+        return assassinHit;
+    }
+
+    int getTurns() {
+        return turns;
+    }
+}
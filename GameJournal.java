@@ -0,0 +1,551 @@
+//GameJournal.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Binary journal of game events, so a game can be resumed after a crash and
+// recorded games can be replayed as deterministic fixtures.
+//
+// The file header is [int magic][int version][long offset of the last game].
+// Every record is [int length][int crc32][byte type][payload], where length
+// and crc cover type + payload. A game starts with a GAME record holding the
+// seed its board was dealt from; hints, reveals and turn ends follow, and a
+// SNAPSHOT of the whole position is written every SNAPSHOT_EVERY events.
+// Resuming seeks to the last game named in the header and replays from its
+// latest GAME or SNAPSHOT record. A torn record at the end (the process died
+// mid-write) fails its length or crc check and is cut off on the next open.
+//
+// A history journal (Simulator --journal) keeps every event of every game and
+// writes on the caller's thread. The game's own journal only needs to resume:
+// a finished game is cut back to one FINAL snapshot of its end position, and
+// records are written and forced to disk by a background thread, off the EDT.
+//
+//   java codenamesRunner --replay FILE [--repeat N]   replay every game in a journal
+class GameJournal {
+    static final int MAGIC = 0x4A4E4743; // "CGNJ"
+    static final int VERSION = 2;
+    static final int SNAPSHOT_EVERY = 16;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD = 1024;
+
+    private static final byte GAME = 1;
+    private static final byte HINT = 2;
+    private static final byte REVEAL = 3;
+    private static final byte END_TURN = 4;
+    private static final byte TIMEOUT = 5;
+    private static final byte RESET_GUESSES = 6;
+    private static final byte SNAPSHOT = 7;
+    private static final byte FINAL = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ExecutorService writer; // null for a history journal
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD);
+    private final CRC32 crc = new CRC32();
+    private long gameStart; // offset of the current game's first record; touched only by writes
+    private GameEngine engine;
+    private long seed;
+    private Hint hint;
+    private int sinceSnapshot;
+
+    // A position rebuilt from the journal
+    static final class Replay {
+        final GameEngine engine;
+        final long seed;
+        final Hint hint; // current clue, or null if none was given this turn
+        final int events;
+
+        Replay(GameEngine engine, long seed, Hint hint, int events) {
+            this.engine = engine;
+            this.seed = seed;
+            this.hint = hint;
+            this.events = events;
+        }
+    }
+
+    // Opens the journal for appending, dropping a torn record left at the end by a crash.
+    // A file from another version of the journal is moved aside to FILE.old.
+    GameJournal(Path path, boolean history) throws IOException {
+        this.path = path;
+        FileChannel opened = openChannel(path);
+        if (opened.size() > 0 && !Scan.isJournal(opened)) {
+            opened.close();
+            Path old = Paths.get(path + ".old");
+            System.err.println("Journal " + path + " is not a version " + VERSION + " journal; moved to " + old);
+            Files.move(path, old, StandardCopyOption.REPLACE_EXISTING);
+            opened = openChannel(path);
+        }
+        channel = opened;
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(HEADER_BYTES);
+            header.flip();
+            channel.write(header);
+            gameStart = HEADER_BYTES;
+        } else {
+            Scan scan = new Scan(channel);
+            gameStart = scan.lastGame;
+            scan.seek(gameStart);
+            long end = scan.validEnd();
+            if (end < channel.size()) {
+                System.err.println("Journal " + path + ": dropping " + (channel.size() - end) + " bytes of incomplete record");
+                channel.truncate(end);
+            }
+        }
+        channel.position(channel.size());
+        writer = history ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "game-journal");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // The journal named by -Dcodenames.journal (game-journal.bin by default), or null if it cannot be opened
+    static GameJournal open() {
+        String file = System.getProperty("codenames.journal", "game-journal.bin");
+        if (file.isEmpty()) {
+            return null;
+        }
+        try {
+            return new GameJournal(Paths.get(file), false);
+        } catch (IOException e) {
+            System.err.println("Game journal disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    // Starts recording a game dealt with engine.newGame(startingTeam, new Random(seed))
+    synchronized void newGame(GameEngine engine, long seed) throws IOException {
+        this.engine = engine;
+        this.seed = seed;
+        hint = null;
+        sinceSnapshot = 0;
+        begin(GAME).putLong(seed).put(Team.of(engine.getStartingTeam())).putInt(engine.getBoard().layoutHash());
+        ByteBuffer game = commit();
+        write(() -> {
+            gameStart = channel.position();
+            append(game);
+            channel.write(ByteBuffer.allocate(8).putLong(0, gameStart), 8);
+        });
+    }
+
+    // Continues recording a game rebuilt by resume()
+    synchronized void attach(Replay replay) {
+        engine = replay.engine;
+        seed = replay.seed;
+        hint = replay.hint;
+        sinceSnapshot = 0;
+    }
+
+    synchronized void hint(Hint hint) throws IOException {
+        this.hint = hint;
+        putString(begin(HINT), hint.clue).putInt(hint.number);
+        event();
+    }
+
+    synchronized void reveal(int card, GameEngine.Outcome outcome) throws IOException {
+        begin(REVEAL).put((byte) card).put((byte) outcome.ordinal());
+        event();
+    }
+
+    synchronized void endTurn() throws IOException {
+        hint = null;
+        begin(END_TURN);
+        event();
+    }
+
+    synchronized void timeout() throws IOException {
+        hint = null;
+        begin(TIMEOUT);
+        event();
+    }
+
+    synchronized void resetGuesses() throws IOException {
+        begin(RESET_GUESSES);
+        event();
+    }
+
+    // Waits for queued writes, then closes the file
+    void close() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void event() throws IOException {
+        if (engine != null && !engine.isActive() && writer != null) {
+            finish();
+            return;
+        }
+        ByteBuffer event = commit();
+        write(() -> append(event));
+        if (engine != null && (++sinceSnapshot >= SNAPSHOT_EVERY || !engine.isActive())) {
+            ByteBuffer snapshot = position(SNAPSHOT);
+            write(() -> append(snapshot));
+        }
+    }
+
+    // Cuts the finished game back to a FINAL record of its end position. The header
+    // already points at the game, so a crash part way leaves at worst no record of it.
+    private void finish() throws IOException {
+        ByteBuffer last = position(FINAL);
+        write(() -> {
+            channel.truncate(gameStart);
+            channel.position(gameStart);
+            append(last);
+        });
+    }
+
+    private ByteBuffer position(byte type) {
+        sinceSnapshot = 0;
+        ByteBuffer b = begin(type);
+        b.putLong(seed).putInt(engine.getBoard().layoutHash());
+        b.put(Team.of(engine.getStartingTeam())).put(Team.of(engine.getCurrentTeam()));
+        b.putInt(engine.getGuessesRemaining()).putInt(engine.getTurns());
+        b.put((byte) (engine.isActive() ? 1 : 0)).put((byte) (engine.isAssassinHit() ? 1 : 0));
+        b.put(engine.getWinner() == null ? (byte) -1 : Team.of(engine.getWinner()));
+        b.putLong(engine.getBoard().getRevealedMask());
+        b.put((byte) (hint == null ? 0 : 1));
+        if (hint != null) {
+            putString(b, hint.clue).putInt(hint.number);
+        }
+        return commit();
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    // Runs a write here for a history journal, otherwise queues it for the writer thread,
+    // which forces each one to disk; a write that fails there costs only the ability to resume
+    private void write(Write write) throws IOException {
+        if (writer == null) {
+            write.run();
+            return;
+        }
+        if (writer.isShutdown()) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                write.run();
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.println("Journal write failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void append(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            channel.write(b);
+        }
+    }
+
+    private ByteBuffer begin(byte type) {
+        record.clear();
+        record.position(RECORD_HEADER);
+        return record.put(type);
+    }
+
+    // Fills in the length and crc; the record is copied so it can wait for the writer thread
+    private ByteBuffer commit() {
+        int length = record.position() - RECORD_HEADER;
+        crc.reset();
+        crc.update(record.array(), RECORD_HEADER, length);
+        record.putInt(0, length).putInt(4, (int) crc.getValue());
+        return ByteBuffer.wrap(Arrays.copyOf(record.array(), RECORD_HEADER + length));
+    }
+
+    private static ByteBuffer putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_RECORD / 2);
+        return b.putShort((short) length).put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xFFFF];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Rebuilds the last game in the journal from its latest GAME, SNAPSHOT or FINAL record,
+    // or returns null if the journal holds no game. The board only supplies the embeddings.
+    static Replay resume(Path path, CodenamesBoard board) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Scan scan = new Scan(channel);
+            scan.seek(scan.lastGame);
+            long restorePoint = -1;
+            while (scan.next()) {
+                if (scan.type == GAME || scan.type == SNAPSHOT || scan.type == FINAL) {
+                    restorePoint = scan.offset;
+                }
+            }
+            if (restorePoint < 0) {
+                return null;
+            }
+            scan.seek(restorePoint);
+            Player player = new Player(board);
+            while (scan.next()) {
+                player.apply(scan.type, scan.payload);
+            }
+            return player.replay();
+        }
+    }
+
+    // Replays every game in the journal from its first record (a compacted game from
+    // its FINAL record), handing each one to the consumer once it is complete.
+    // Returns the number of events applied.
+    static long replayAll(Path path, CodenamesBoard board, Consumer<Replay> games) throws IOException {
+        long events = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Scan scan = new Scan(channel);
+            Player player = null;
+            while (scan.next()) {
+                if (scan.type == GAME || scan.type == FINAL) {
+                    if (player != null) {
+                        games.accept(player.replay());
+                    }
+                    player = new Player(board.copy());
+                } else if (scan.type == SNAPSHOT) {
+                    continue; // replaying from the start; snapshots only matter for resume
+                }
+                if (player != null) {
+                    player.apply(scan.type, scan.payload);
+                    events++;
+                }
+            }
+            if (player != null) {
+                games.accept(player.replay());
+            }
+        }
+        return events;
+    }
+
+    // Applies records to a fresh engine, checking that reveals come out as recorded
+    private static final class Player {
+        private final CodenamesBoard board;
+        private GameEngine engine;
+        private long seed;
+        private Hint hint;
+        private int events;
+
+        Player(CodenamesBoard board) {
+            this.board = board;
+        }
+
+        void apply(byte type, ByteBuffer b) throws IOException {
+            switch (type) {
+                case GAME:
+                    seed = b.getLong();
+                    deal(Team.name(b.get()), b.getInt());
+                    hint = null;
+                    break;
+                case SNAPSHOT:
+                case FINAL:
+                    restore(b);
+                    break;
+                case HINT:
+                    hint = new Hint(getString(b), b.getInt());
+                    game().applyHint(hint);
+                    break;
+                case REVEAL: {
+                    int card = b.get();
+                    GameEngine.Outcome recorded = GameEngine.Outcome.values()[b.get()];
+                    GameEngine.Outcome outcome = game().guess(board.wordAt(card));
+                    if (outcome != recorded) {
+                        throw new IOException("Replay diverged: " + board.wordAt(card) + " was " + recorded + ", now " + outcome);
+                    }
+                    break;
+                }
+                case END_TURN:
+                case TIMEOUT:
+                    game().endTurn();
+                    hint = null;
+                    break;
+                case RESET_GUESSES:
+                    game().resetGuesses();
+                    break;
+                default:
+                    throw new IOException("Unknown journal record type " + type);
+            }
+            events++;
+        }
+
+        Replay replay() {
+            return new Replay(engine, seed, hint, events);
+        }
+
+        private void deal(String startingTeam, int layoutHash) throws IOException {
+            engine = new GameEngine(board);
+            engine.newGame(startingTeam, new Random(seed));
+            if (board.layoutHash() != layoutHash) {
+                throw new IOException("Journal was recorded with a different word list");
+            }
+        }
+
+        private void restore(ByteBuffer b) throws IOException {
+            seed = b.getLong();
+            int layoutHash = b.getInt();
+            String startingTeam = Team.name(b.get());
+            String currentTeam = Team.name(b.get());
+            int guessesRemaining = b.getInt();
+            int turns = b.getInt();
+            boolean active = b.get() != 0;
+            boolean assassinHit = b.get() != 0;
+            byte winner = b.get();
+            long revealed = b.getLong();
+            deal(startingTeam, layoutHash);
+            for (long m = revealed; m != 0; m &= m - 1) {
+                board.revealCard(Long.numberOfTrailingZeros(m));
+            }
+            engine.restore(currentTeam, guessesRemaining, turns, active, winner < 0 ? null : Team.name(winner), assassinHit);
+            hint = b.get() != 0 ? new Hint(getString(b), b.getInt()) : null;
+        }
+
+        private GameEngine game() throws IOException {
+            if (engine == null) {
+                throw new IOException("Journal event before the first game");
+            }
+            return engine;
+        }
+    }
+
+    // Walks the records of a journal file, stopping at the end or at the first damaged record
+    private static final class Scan {
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        private final CRC32 crc = new CRC32();
+        private long position = HEADER_BYTES;
+        final long lastGame; // from the file header
+        long offset;
+        byte type;
+        ByteBuffer payload = ByteBuffer.allocate(MAX_RECORD);
+
+        Scan(FileChannel channel) throws IOException {
+            this.channel = channel;
+            ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_BYTES);
+            if (channel.read(fileHeader, 0) < HEADER_BYTES || fileHeader.getInt(0) != MAGIC || fileHeader.getInt(4) != VERSION) {
+                throw new IOException("Not a version " + VERSION + " game journal");
+            }
+            long last = fileHeader.getLong(8);
+            lastGame = last < HEADER_BYTES || last > channel.size() ? HEADER_BYTES : last;
+        }
+
+        static boolean isJournal(FileChannel channel) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(8);
+            return channel.read(b, 0) == 8 && b.getInt(0) == MAGIC && b.getInt(4) == VERSION;
+        }
+
+        void seek(long offset) {
+            position = offset;
+        }
+
+        boolean next() throws IOException {
+            header.clear();
+            if (readFully(header, position) < RECORD_HEADER) {
+                return false;
+            }
+            int length = header.getInt(0);
+            if (length < 1 || length > MAX_RECORD - RECORD_HEADER) {
+                return false;
+            }
+            payload.clear().limit(length);
+            if (readFully(payload, position + RECORD_HEADER) < length) {
+                return false;
+            }
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != header.getInt(4)) {
+                return false;
+            }
+            offset = position;
+            position += RECORD_HEADER + length;
+            payload.flip();
+            type = payload.get();
+            return true;
+        }
+
+        // End of the last intact record
+        long validEnd() throws IOException {
+            while (next()) {
+            }
+            return position;
+        }
+
+        private int readFully(ByteBuffer dst, long at) throws IOException {
+            int total = 0;
+            while (dst.hasRemaining()) {
+                int n = channel.read(dst, at + total);
+                if (n < 0) break;
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: java codenamesRunner --replay FILE [--repeat N]");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        int repeat = args.length > 2 && args[1].equals("--repeat") ? Integer.parseInt(args[2]) : 1;
+
+        EmbeddingStore store = null;
+        try {
+            store = EmbeddingStore.load(codenamesRunner.EMBEDDINGS_FILE);
+        } catch (IOException e) {
+            // Replay needs no embeddings; with them it also exercises the similarity matrix
+        }
+        CodenamesBoard board = new CodenamesBoard(store);
+
+        long[] games = new long[1];
+        long[] finished = new long[1];
+        long events = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            events += replayAll(path, board, replay -> {
+                games[0]++;
+                if (!replay.engine.isActive()) finished[0]++;
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed %d games (%d finished), %d events in %.3f s (%.0f events/sec)%n",
+            games[0], finished[0], events, seconds, events / seconds);
+    }
+}
@@ -0,0 +1,252 @@
+//GameLog.java
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The game log as a list model over a fixed-size ring buffer of entries.
+//
+// add() may be called from any thread (timers, hint callbacks): entries queue
+// up and are moved into the ring in one batch per EDT pass, with one model
+// event for the whole batch. Once the ring is full the oldest rows drop off
+// the view, but every entry is also appended to a text file (game-log.txt,
+// or -Dcodenames.logFile) so the full history survives.
+class GameLog extends AbstractListModel<GameLog.Entry> {
+    private static final long serialVersionUID = 1L;
+    static final int DEFAULT_CAPACITY = 2000;
+
+    enum Kind {
+        INFO(new Color(200, 200, 200), false),
+        CORRECT(new Color(120, 200, 120), false),
+        WRONG(new Color(230, 150, 80), false),
+        ASSASSIN(new Color(240, 80, 80), true),
+        CLUE(new Color(240, 220, 120), true),
+        TURN(new Color(120, 190, 240), true),
+        TIMER(new Color(230, 200, 90), false),
+        ERROR(new Color(240, 80, 80), false),
+        GAME(Color.WHITE, true);
+
+        final Color color;
+        final boolean bold;
+
+        Kind(Color color, boolean bold) {
+            this.color = color;
+            this.bold = bold;
+        }
+    }
+
+    static final class Entry {
+        final long time;
+        final int game;
+        final Kind kind;
+        final String text;
+
+        Entry(long time, int game, Kind kind, String text) {
+            this.time = time;
+            this.game = game;
+            this.kind = kind;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final Entry NEW_GAME = new Entry(0, 0, Kind.GAME, ""); // queued marker: clear the view
+
+    private final Entry[] ring;
+    private int head;  // index of the oldest entry; EDT only, like size
+    private int size;
+
+    private final ConcurrentLinkedQueue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicInteger game = new AtomicInteger();
+    private final ExecutorService spill = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "game-log-spill");
+        t.setDaemon(true);
+        return t;
+    });
+    private Writer spillWriter; // spill thread only
+
+    GameLog(int capacity, File spillFile) {
+        ring = new Entry[Math.max(1, capacity)];
+        if (spillFile != null) {
+            spill.execute(() -> {
+                try {
+                    spillWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spillFile, true), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    System.err.println("Game log will not be saved: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    static GameLog create() {
+        String file = System.getProperty("codenames.logFile", "game-log.txt");
+        return new GameLog(Integer.getInteger("codenames.logCapacity", DEFAULT_CAPACITY), file.isEmpty() ? null : new File(file));
+    }
+
+    void add(Kind kind, String text) {
+        incoming.add(new Entry(System.currentTimeMillis(), game.get(), kind, text));
+        scheduleDrain();
+    }
+
+    // Starts the next game's section: the view is cleared, the file keeps everything
+    void newGame() {
+        game.incrementAndGet();
+        incoming.add(NEW_GAME);
+        scheduleDrain();
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public Entry getElementAt(int index) {
+        return ring[(head + index) % ring.length];
+    }
+
+    // A list that only renders the rows in view, scrolled to the newest entry unless the user has scrolled up
+    JScrollPane createView() {
+        JList<Entry> list = new JList<>(this);
+        Font plain = new Font("Monospaced", Font.PLAIN, 14);
+        Font bold = plain.deriveFont(Font.BOLD);
+        list.setBackground(new Color(30, 30, 30));
+        list.setFont(plain);
+        list.setFixedCellHeight(list.getFontMetrics(plain).getHeight() + 4); // no per-row measuring
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index, boolean selected, boolean focus) {
+                super.getListCellRendererComponent(l, value, index, selected, focus);
+                Kind kind = ((Entry) value).kind;
+                setFont(kind.bold ? bold : plain);
+                if (!selected) {
+                    setForeground(kind.color);
+                    setBackground(l.getBackground());
+                }
+                setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+                return this;
+            }
+        });
+
+        JScrollPane scroll = new JScrollPane(list);
+        boolean[] follow = {true};
+        scroll.getVerticalScrollBar().addAdjustmentListener(e -> {
+            BoundedRangeModel m = scroll.getVerticalScrollBar().getModel();
+            if (!e.getValueIsAdjusting()) {
+                follow[0] = m.getValue() + m.getExtent() >= m.getMaximum() - list.getFixedCellHeight();
+            }
+        });
+        addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                if (follow[0]) {
+                    // After the list has been laid out with its new rows
+                    SwingUtilities.invokeLater(() -> list.ensureIndexIsVisible(getSize() - 1));
+                }
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
+        return scroll;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        List<Entry> spilled = new ArrayList<>();
+        List<Entry> batch = new ArrayList<>();
+        Entry e;
+        while ((e = incoming.poll()) != null) {
+            if (e == NEW_GAME) {
+                // Whatever was queued before the marker belonged to the old game: spill it, never show it
+                batch.clear();
+                int removed = size;
+                head = 0;
+                size = 0;
+                Arrays.fill(ring, null);
+                if (removed > 0) {
+                    fireIntervalRemoved(this, 0, removed - 1);
+                }
+                continue;
+            }
+            batch.add(e);
+            spilled.add(e);
+        }
+        if (!spilled.isEmpty()) {
+            writeSpill(spilled);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int keep = Math.min(batch.size(), ring.length);
+        int overflow = Math.max(0, size + keep - ring.length);
+        if (overflow > 0) {
+            for (int i = 0; i < overflow; i++) {
+                ring[(head + i) % ring.length] = null;
+            }
+            head = (head + overflow) % ring.length;
+            size -= overflow;
+            fireIntervalRemoved(this, 0, overflow - 1);
+        }
+        int first = size;
+        for (int i = batch.size() - keep; i < batch.size(); i++) {
+            ring[(head + size) % ring.length] = batch.get(i);
+            size++;
+        }
+        fireIntervalAdded(this, first, size - 1);
+    }
+
+    // One write and flush per drained batch, off the EDT
+    private void writeSpill(List<Entry> entries) {
+        spill.execute(() -> {
+            if (spillWriter == null) {
+                return;
+            }
+            try {
+                for (Entry entry : entries) {
+                    spillWriter.write(TIME_FORMAT.format(Instant.ofEpochMilli(entry.time))
+                        + " game " + entry.game + " " + entry.kind + " " + entry.text);
+                    spillWriter.write(System.lineSeparator());
+                }
+                spillWriter.flush();
+            } catch (IOException ex) {
+                System.err.println("Game log spill failed: " + ex.getMessage());
+                spillWriter = null;
+            }
+        });
+    }
+}
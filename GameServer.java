@@ -0,0 +1,463 @@
+//GameServer.java
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Headless multi-game server for a local lobby or tournament:
+//   java codenamesRunner --server [--port 8080] [--scorers N] [--bind 127.0.0.1] [--worker]
+//
+// Every game is a small Session (board, rules, RNG, current clue) in one map,
+// and requests run on virtual threads where the JVM has them (Java 21+),
+// otherwise on a fixed pool. Clues come from one shared HintEngine, which is
+// stateless; a semaphore lets at most N clues be scored at once, so the number
+// of games is bounded by memory rather than by scoring threads.
+//
+// With --worker, or when the embedding store cannot be loaded, clues come from
+// the Python worker instead. Requests from all games then go through a
+// HintBatcher, so clues asked for at about the same time share one worker
+// round trip (-Dcodenames.batchDelayMs, -Dcodenames.batchSize). If the worker
+// cannot give the next clue, the move that needed it is answered with 503 and
+// not applied, so it can be sent again.
+//
+//   POST   /games[?team=RED&risk=NORMAL]   start a game, returns its state and first clue
+//   GET    /games/{id}                     current state
+//   POST   /games/{id}/reveal?word=W       guess a card
+//   POST   /games/{id}/endTurn             pass to the other team
+//   POST   /games/{id}/newGame             deal a new board in the same session
+//   DELETE /games/{id}                     drop the session
+//   GET    /stats                          sessions and scorer or batcher usage
+//   GET    /metrics                        hint latency and counters, Prometheus text format
+//   GET    /metrics.json                   the same as a JSON snapshot
+class GameServer {
+    private static final long IDLE_TIMEOUT_MS = 30 * 60 * 1000;
+    private static final int MAX_SESSIONS = 100_000;
+
+    static final class Session {
+        final long id;
+        GameEngine game; // replaced by a moved copy only once the move's clue is in
+        final Random rnd = new Random();
+        final ReentrantLock lock = new ReentrantLock(); // not synchronized: a virtual thread must not pin while scoring
+        RiskProfile risk = RiskProfile.NORMAL;
+        Hint hint;
+        long hintAt; // nanoTime the current clue was given, for reveal events
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Session(long id, EmbeddingStore store) {
+            this.id = id;
+            this.game = new GameEngine(new CodenamesBoard(store));
+        }
+    }
+
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HintEngine engine;   // null when clues come from the worker
+    private final Semaphore scoring;
+    private final int scorers;
+    private final HintBatcher batcher; // null when clues come from the engine
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong requests = new AtomicLong();
+    private final ExecutorService requestExecutor = newRequestExecutor();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "session-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+    private HttpServer server;
+
+    GameServer(HintEngine engine, int scorers) {
+        this.engine = engine;
+        this.scorers = scorers;
+        scoring = new Semaphore(scorers);
+        batcher = null;
+    }
+
+    GameServer(HintBatcher batcher) {
+        this.batcher = batcher;
+        engine = null;
+        scorers = 0;
+        scoring = null;
+    }
+
+    // Virtual threads are looked up reflectively so the server still runs (on platform threads) on Java 17
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+        }
+    }
+
+    void start(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(requestExecutor);
+        server.start();
+        sweeper.scheduleAtFixedRate(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        sweeper.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    int getSessionCount() {
+        return sessions.size();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (exchange.getRequestURI().getPath().equals("/metrics") && exchange.getRequestMethod().equals("GET")) {
+            byte[] text = HintMetrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, text.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(text);
+            }
+            return;
+        }
+        JsonCodec.Writer json = new JsonCodec.Writer();
+        int status = 200;
+        try {
+            status = route(exchange, json);
+        } catch (HttpError e) {
+            status = e.status;
+            json.reset().beginObject().name("error").value(e.getMessage()).endObject();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 503;
+            json.reset().beginObject().name("error").value("Server shutting down").endObject();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            status = 500;
+            json.reset().beginObject().name("error").value(String.valueOf(e.getMessage())).endObject();
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, json.length());
+        try (OutputStream out = exchange.getResponseBody()) {
+            json.writeTo(out);
+        }
+    }
+
+    private int route(HttpExchange exchange, JsonCodec.Writer json) throws HttpError, InterruptedException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (path.length == 1 && path[0].equals("stats")) {
+            requireMethod(method, "GET");
+            writeStats(json);
+            return 200;
+        }
+        if (path.length == 1 && path[0].equals("metrics.json")) {
+            requireMethod(method, "GET");
+            HintMetrics.writeJson(json);
+            return 200;
+        }
+        if (path.length == 0 || !path[0].equals("games")) {
+            throw new HttpError(404, "No such endpoint");
+        }
+
+        if (path.length == 1) {
+            requireMethod(method, "POST");
+            if (sessions.size() >= MAX_SESSIONS) {
+                throw new HttpError(503, "Too many games in progress");
+            }
+            // Dealt before it is published, so no other request can see it undealt
+            Session session = new Session(nextId.getAndIncrement(), engine == null ? null : engine.getStore());
+            deal(session, query);
+            sessions.put(session.id, session);
+            writeSession(json, session, null);
+            return 201;
+        }
+
+        Session session = sessions.get(parseId(path[1]));
+        if (session == null) {
+            throw new HttpError(404, "No game " + path[1]);
+        }
+        session.lastUsed = System.currentTimeMillis();
+        String action = path.length > 2 ? path[2] : "";
+        GameEngine.Outcome[] outcome = {null};
+
+        switch (action) {
+            case "":
+                if (method.equals("DELETE")) {
+                    sessions.remove(session.id);
+                    json.beginObject().name("id").value(session.id).name("deleted").value(true).endObject();
+                    return 200;
+                }
+                requireMethod(method, "GET");
+                break;
+            case "reveal":
+                requireMethod(method, "POST");
+                String word = query.get("word");
+                if (word == null) {
+                    throw new HttpError(400, "Missing word");
+                }
+                withLock(session, () -> outcome[0] = reveal(session, word.toUpperCase()));
+                break;
+            case "endTurn":
+                requireMethod(method, "POST");
+                withLock(session, () -> {
+                    if (session.game.isActive()) {
+                        nextTurn(session);
+                    }
+                });
+                break;
+            case "newGame":
+                requireMethod(method, "POST");
+                withLock(session, () -> deal(session, query));
+                break;
+            default:
+                throw new HttpError(404, "No such action " + action);
+        }
+        withLock(session, () -> writeSession(json, session, outcome[0]));
+        return 200;
+    }
+
+    // Moves that need a new clue are played on a copy of the game, which replaces the
+    // session's only once the clue is in: a 503 from the worker leaves the game as it
+    // was, so the same request can simply be retried
+    private void deal(Session session, Map<String, String> query) throws HttpError, InterruptedException {
+        String team = query.getOrDefault("team", session.rnd.nextBoolean() ? "RED" : "BLUE").toUpperCase();
+        RiskProfile risk = query.containsKey("risk") ? RiskProfile.forName(query.get("risk").toUpperCase()) : session.risk;
+        GameEngine next = session.game.copy();
+        next.newGame(team.equals("BLUE") ? "BLUE" : "RED", session.rnd);
+        giveClue(session, next, risk);
+        session.risk = risk;
+        session.game = next;
+    }
+
+    private GameEngine.Outcome reveal(Session session, String word) throws HttpError, InterruptedException {
+        if (session.game.getBoard().indexOf(word) < 0) {
+            throw new HttpError(400, "No card " + word + " on this board");
+        }
+        String team = session.game.getCurrentTeam();
+        String cardTeam = session.game.getBoard().getCardTeam(word);
+        long sinceClue = System.nanoTime() - session.hintAt;
+        GameEngine next = session.game.copy();
+        GameEngine.Outcome outcome = next.guess(word);
+        if (outcome.endsGame) {
+            session.hint = Hint.GAME_OVER;
+        } else if (outcome.endsTurn) {
+            next.endTurn();
+            giveClue(session, next, session.risk);
+        }
+        session.game = next;
+        HintMetrics.reveal(word, team, cardTeam, outcome, sinceClue);
+        return outcome;
+    }
+
+    private void nextTurn(Session session) throws HttpError, InterruptedException {
+        GameEngine next = session.game.copy();
+        next.endTurn();
+        giveClue(session, next, session.risk);
+        session.game = next;
+    }
+
+    // Fetches the clue for the turn the game is on and applies it; the session's clue
+    // only changes once that has succeeded
+    private void giveClue(Session session, GameEngine game, RiskProfile risk) throws HttpError, InterruptedException {
+        HintMetrics.HintEvent event = new HintMetrics.HintEvent();
+        event.begin();
+        long start = System.nanoTime();
+        String backend = engine != null ? "engine" : "worker";
+        Hint hint;
+        if (engine != null) {
+            scoring.acquire();
+            try {
+                long scoreStart = System.nanoTime();
+                hint = engine.suggest(game.getBoard(), game.getCurrentTeam(), risk, session.rnd);
+                HintMetrics.record(HintMetrics.Stage.SCORE, backend, System.nanoTime() - scoreStart);
+            } finally {
+                scoring.release();
+            }
+        } else {
+            try {
+                hint = batcher.requestHint(game.getBoard(), game.getCurrentTeam(), risk.name);
+            } catch (InterruptedIOException e) {
+                throw new InterruptedException(e.getMessage());
+            } catch (IOException e) {
+                throw new HttpError(503, "Hint worker unavailable: " + e.getMessage());
+            }
+        }
+        game.applyHint(hint);
+        session.hint = hint;
+        session.hintAt = System.nanoTime();
+        HintMetrics.record(HintMetrics.Stage.TOTAL, backend, session.hintAt - start);
+        HintMetrics.hint(event, game.getCurrentTeam(), risk.name, hint, backend);
+    }
+
+    // Operative's view: a card's team is only shown once it has been revealed
+    private static void writeSession(JsonCodec.Writer json, Session session, GameEngine.Outcome outcome) {
+        GameEngine game = session.game;
+        CodenamesBoard board = game.getBoard();
+        json.beginObject();
+        json.name("id").value(session.id);
+        if (outcome != null) {
+            json.name("outcome").value(outcome.name());
+        }
+        json.name("startingTeam").value(game.getStartingTeam());
+        json.name("currentTeam").value(game.getCurrentTeam());
+        json.name("risk").value(session.risk.name);
+        json.name("clue").value(session.hint == null ? null : session.hint.clue);
+        json.name("number").value(session.hint == null ? 0 : session.hint.number);
+        json.name("guessesRemaining").value(game.getGuessesRemaining());
+        json.name("turns").value(game.getTurns());
+        json.name("active").value(game.isActive());
+        json.name("winner").value(game.getWinner());
+        json.name("assassinHit").value(game.isAssassinHit());
+        json.name("cards").beginArray();
+        for (int card = 0; card < board.size(); card++) {
+            json.beginObject().name("word").value(board.wordAt(card));
+            boolean revealed = board.isCardRevealed(card);
+            json.name("revealed").value(revealed);
+            if (revealed) {
+                json.name("team").value(Team.name(board.teamAt(card)));
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private void writeStats(JsonCodec.Writer json) {
+        json.beginObject();
+        json.name("sessions").value(sessions.size());
+        json.name("requests").value(requests.get());
+        if (engine != null) {
+            json.name("scorers").value(scorers);
+            json.name("scorersIdle").value(scoring.availablePermits());
+        } else {
+            json.name("batcher");
+            batcher.writeMetrics(json);
+        }
+        json.endObject();
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+        sessions.values().removeIf(s -> s.lastUsed < cutoff);
+    }
+
+    private interface SessionTask {
+        void run() throws HttpError, InterruptedException;
+    }
+
+    private static void withLock(Session session, SessionTask task) throws HttpError, InterruptedException {
+        session.lock.lockInterruptibly();
+        try {
+            task.run();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    private static void requireMethod(String method, String expected) throws HttpError {
+        if (!method.equals(expected)) {
+            throw new HttpError(405, "Use " + expected);
+        }
+    }
+
+    private static long parseId(String id) throws HttpError {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "No game " + id);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    static void main(String[] args) throws Exception {
+        int port = 8080;
+        String bind = "127.0.0.1";
+        int scorers = Runtime.getRuntime().availableProcessors();
+        boolean useWorker = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--bind":
+                    bind = args[++i];
+                    break;
+                case "--scorers":
+                    scorers = Integer.parseInt(args[++i]);
+                    break;
+                case "--worker":
+                    useWorker = true;
+                    break;
+                default:
+                    System.err.println("Unknown server option: " + args[i]);
+                    return;
+            }
+        }
+
+        EmbeddingStore store = null;
+        if (!useWorker) {
+            try {
+                long start = System.nanoTime();
+                store = codenamesRunner.loadEmbeddings();
+                HintMetrics.record(HintMetrics.Stage.MODEL_LOAD, "engine", System.nanoTime() - start);
+            } catch (IOException e) {
+                System.err.println("Embedding store unavailable, taking clues from the Python worker: " + e.getMessage());
+            }
+        }
+
+        GameServer gameServer;
+        String clues;
+        if (store != null) {
+            gameServer = new GameServer(new HintEngine(store), scorers);
+            clues = "scoring up to " + scorers + " clue(s) at once";
+        } else {
+            HintWorker worker = new HintWorker(codenamesRunner.PYTHON_SCRIPT, new File(System.getProperty("user.dir")));
+            worker.start();
+            HintBatcher batcher = new HintBatcher(worker::requestHints,
+                Long.getLong("codenames.batchDelayMs", 2), Integer.getInteger("codenames.batchSize", 32));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                batcher.shutdown();
+                worker.shutdown();
+            }));
+            gameServer = new GameServer(batcher);
+            clues = "batching clues through the Python worker";
+        }
+        gameServer.start(new InetSocketAddress(bind, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(gameServer::stop));
+        System.out.println("Codenames server on http://" + bind + ":" + port + ", " + clues);
+    }
+}
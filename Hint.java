@@ -0,0 +1,20 @@
+//Hint.java
+
+// A spymaster clue and how many cards it points at
+final class Hint {
+    static final Hint GAME_OVER = new Hint("GAME_OVER", 0);
+    static final Hint NO_CLUE = new Hint("NO CLUE", 0); // the deadline fallback had nothing safe to say
+
+    final String clue;
+    final int number;
+
+    Hint(String clue, int number) {
+        this.clue = clue;
+        this.number = number;
+    }
+
+    @Override
+    public String toString() {
+        return clue + " (" + number + ")";
+    }
+}
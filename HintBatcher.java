@@ -0,0 +1,187 @@
+//HintBatcher.java
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Collects hint requests from many games and sends them to the backend in batches.
+//
+// The first request to arrive opens a window. The batch is dispatched when
+// maxDelayMs has passed or maxBatch requests are waiting, whichever comes
+// first, and each result is handed back to the caller that asked for it.
+// A longer delay gives bigger batches at the cost of latency for lone games.
+class HintBatcher {
+    interface Backend {
+        List<Hint> hints(List<Request> batch) throws IOException;
+    }
+
+    static final class Request {
+        final CodenamesBoard board;
+        final String team;
+        final String risk;
+        final long queuedAt = System.nanoTime();
+        final CompletableFuture<Hint> result = new CompletableFuture<>();
+
+        Request(CodenamesBoard board, String team, String risk) {
+            this.board = board;
+            this.team = team;
+            this.risk = risk;
+        }
+    }
+
+    private final Backend backend;
+    private final long maxDelayNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong queueNanos = new AtomicLong();
+    private final AtomicLong backendNanos = new AtomicLong();
+    private volatile int largestBatch;
+
+    HintBatcher(Backend backend, long maxDelayMs, int maxBatch) {
+        this.backend = backend;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.maxBatch = Math.max(1, maxBatch);
+        dispatcher = new Thread(this::dispatchLoop, "hint-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // The board is copied, so the caller may keep playing on it while the request waits
+    CompletableFuture<Hint> submit(CodenamesBoard board, String team, String risk) {
+        Request request = new Request(board.copy(), team, risk);
+        queue.add(request);
+        return request.result;
+    }
+
+    Hint requestHint(CodenamesBoard board, String team, String risk) throws IOException {
+        try {
+            return submit(board, team, risk).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a batched hint");
+        }
+    }
+
+    void shutdown() {
+        dispatcher.interrupt();
+        IOException closed = new IOException("Hint batcher shut down");
+        Request r;
+        while ((r = queue.poll()) != null) {
+            r.result.completeExceptionally(closed);
+        }
+    }
+
+    private void dispatchLoop() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long wait = deadline - System.nanoTime();
+                    Request next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            IOException closed = new IOException("Hint batcher shut down");
+            for (Request r : batch) {
+                r.result.completeExceptionally(closed);
+            }
+        }
+    }
+
+    private void dispatch(List<Request> batch) {
+        long start = System.nanoTime();
+        for (Request r : batch) {
+            queueNanos.addAndGet(start - r.queuedAt);
+        }
+        requests.addAndGet(batch.size());
+        batches.incrementAndGet();
+        if (batch.size() > largestBatch) {
+            largestBatch = batch.size();
+        }
+
+        try {
+            List<Hint> hints = backend.hints(batch);
+            if (hints.size() != batch.size()) {
+                throw new IOException("Backend returned " + hints.size() + " hints for " + batch.size() + " requests");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(hints.get(i));
+            }
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            for (Request r : batch) {
+                r.result.completeExceptionally(e);
+            }
+        } finally {
+            backendNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    long getRequestCount() {
+        return requests.get();
+    }
+
+    long getBatchCount() {
+        return batches.get();
+    }
+
+    long getFailedBatchCount() {
+        return failedBatches.get();
+    }
+
+    int getLargestBatch() {
+        return largestBatch;
+    }
+
+    double getMeanBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0 : (double) requests.get() / b;
+    }
+
+    // Time a request spent waiting for its batch to fill
+    double getMeanQueueMillis() {
+        long r = requests.get();
+        return r == 0 ? 0 : queueNanos.get() / 1e6 / r;
+    }
+
+    double getMeanBackendMillis() {
+        long b = batches.get();
+        return b == 0 ? 0 : backendNanos.get() / 1e6 / b;
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    void writeMetrics(JsonCodec.Writer json) {
+        json.beginObject();
+        json.name("maxDelayMs").value(maxDelayNanos / 1e6);
+        json.name("maxBatch").value(maxBatch);
+        json.name("requests").value(getRequestCount());
+        json.name("batches").value(getBatchCount());
+        json.name("failedBatches").value(getFailedBatchCount());
+        json.name("meanBatchSize").value(getMeanBatchSize());
+        json.name("largestBatch").value(getLargestBatch());
+        json.name("meanQueueMs").value(getMeanQueueMillis());
+        json.name("meanBackendMs").value(getMeanBackendMillis());
+        json.name("queueDepth").value(getQueueDepth());
+        json.endObject();
+    }
+}
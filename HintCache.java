@@ -0,0 +1,436 @@
+//HintCache.java
+
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Memoized clue rankings (HintEngine.ranked), so a position seen before costs a
+// lookup instead of a scoring pass. The random top-3 pick is still made on
+// every request, on top of the cached ranking.
+//
+// A ranking depends only on which words are still unrevealed on each side and
+// the risk profile; card order, reveal order and which colour is playing make
+// no difference. The key is that canonical position hashed to 128 bits.
+//
+// Recently used rankings stay in memory (LRU, -Dcodenames.hintCacheSize
+// entries). Evicted ones, and everything still in memory at close(), are
+// appended to hint-cache.bin (-Dcodenames.hintCache, empty for memory only)
+// so they survive a restart. Appends and compaction run on one background
+// writer thread, and the file has a lock of its own, so a lookup served from
+// memory never waits on disk I/O. The file keeps the GameJournal record layout:
+// [int length][int crc32][16-byte key][byte count]{[short length][UTF-8 clue][int number]}.
+// When it grows past -Dcodenames.hintCacheDiskMb it is rewritten with the
+// newer half of its entries. A store re-export invalidates the whole file.
+final class HintCache {
+    static final int MAGIC = 0x43484743; // "CGHC"
+    static final int VERSION = 1;
+    static final int DEFAULT_CAPACITY = 10_000;
+    static final long DEFAULT_DISK_BYTES = 16L << 20;
+    private static final int HEADER_BYTES = 16; // magic, version, store fingerprint
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD = 1024;
+
+    static final class Key {
+        final long hi;
+        final long lo;
+
+        Key(long hi, long lo) {
+            this.hi = hi;
+            this.lo = lo;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hi == hi && ((Key) o).lo == lo;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hi ^ lo);
+        }
+    }
+
+    private final HintEngine engine;
+    private final int capacity;
+    private final LinkedHashMap<Key, List<Hint>> memory;
+    private final Map<Key, List<Hint>> spilling = new HashMap<>(); // evicted, waiting for the writer
+    private final Object file = new Object(); // guards onDisk, channel and the buffers below
+    private final Map<Key, Long> onDisk = new HashMap<>(); // offset of each entry's record in the file
+    private final ExecutorService writer; // null: memory only
+    private final Path path;
+    private final long fingerprint;
+    private final long maxDiskBytes;
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel; // null: memory only
+    private long hits;
+    private long diskHits;
+    private long misses;
+
+    HintCache(HintEngine engine, int capacity, Path path, long maxDiskBytes) throws IOException {
+        this.engine = engine;
+        this.capacity = Math.max(1, capacity);
+        this.path = path;
+        this.maxDiskBytes = maxDiskBytes;
+        fingerprint = engine.getStore().fingerprint();
+        memory = new LinkedHashMap<Key, List<Hint>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Hint>> eldest) {
+                if (size() <= HintCache.this.capacity) {
+                    return false;
+                }
+                spillLater(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        if (path != null) {
+            channel = openFile();
+            writer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "hint-cache-writer");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            writer = null;
+        }
+    }
+
+    // The cache configured by the -Dcodenames.hintCache* properties, or null with a size of 0
+    static HintCache open(HintEngine engine) {
+        int capacity = Integer.getInteger("codenames.hintCacheSize", DEFAULT_CAPACITY);
+        if (capacity <= 0) {
+            return null;
+        }
+        String file = System.getProperty("codenames.hintCache", "hint-cache.bin");
+        long maxDisk = Long.getLong("codenames.hintCacheDiskMb", DEFAULT_DISK_BYTES >> 20) << 20;
+        try {
+            return new HintCache(engine, capacity, file.isEmpty() ? null : Paths.get(file), maxDisk);
+        } catch (IOException e) {
+            System.err.println("Hint cache file disabled: " + e.getMessage());
+            try {
+                return new HintCache(engine, capacity, null, 0);
+            } catch (IOException impossible) {
+                return null;
+            }
+        }
+    }
+
+    Hint suggest(CodenamesBoard board, String team, RiskProfile risk, Random rnd) {
+        Key key = keyOf(board, team, risk);
+        List<Hint> ranked = get(key);
+        if (ranked == null) {
+            ranked = engine.ranked(board, team, risk);
+            put(key, ranked);
+        }
+        return HintEngine.pick(ranked, rnd);
+    }
+
+    List<Hint> get(Key key) {
+        synchronized (this) {
+            List<Hint> ranked = memory.get(key);
+            if (ranked == null) {
+                ranked = spilling.get(key);
+                if (ranked != null) {
+                    memory.put(key, ranked);
+                }
+            }
+            if (ranked != null) {
+                hits++;
+                return ranked;
+            }
+        }
+        List<Hint> ranked = readFromDisk(key);
+        synchronized (this) {
+            if (ranked == null) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+            memory.put(key, ranked);
+            return ranked;
+        }
+    }
+
+    synchronized void put(Key key, List<Hint> ranked) {
+        memory.put(key, Collections.unmodifiableList(new ArrayList<>(ranked)));
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized int size() {
+        return memory.size();
+    }
+
+    int diskSize() {
+        synchronized (file) {
+            return onDisk.size();
+        }
+    }
+
+    // Spills what is only in memory, so the next start finds it, and waits for the writer
+    void close() {
+        if (writer == null) {
+            return;
+        }
+        synchronized (this) {
+            for (Map.Entry<Key, List<Hint>> e : memory.entrySet()) {
+                spillLater(e.getKey(), e.getValue());
+            }
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (file) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+    }
+
+    // Canonical position: risk, then the unrevealed words of the side to play, the other side,
+    // the neutrals and the assassin, each sorted
+    static Key keyOf(CodenamesBoard board, String team, RiskProfile risk) {
+        byte own = Team.of(team);
+        StringBuilder canonical = new StringBuilder(256);
+        canonical.append(risk.name).append('/').append(risk.assassinMax).append('/')
+            .append(risk.penaltyWeight).append('/').append(risk.threshold).append('/')
+            .append(risk.multiWordBonus).append('/').append(risk.nounBias);
+        appendWords(canonical, board, board.teamMask(own));
+        appendWords(canonical, board, board.teamMask(Team.other(own)));
+        appendWords(canonical, board, board.teamMask(Team.NEUTRAL));
+        appendWords(canonical, board, board.teamMask(Team.ASSASSIN));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            ByteBuffer d = ByteBuffer.wrap(digest);
+            return new Key(d.getLong(), d.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM ships SHA-256
+        }
+    }
+
+    private static void appendWords(StringBuilder out, CodenamesBoard board, long mask) {
+        long unrevealed = mask & board.getUnrevealedMask();
+        String[] words = new String[Long.bitCount(unrevealed)];
+        int n = 0;
+        for (long m = unrevealed; m != 0; m &= m - 1) {
+            words[n++] = board.wordAt(Long.numberOfTrailingZeros(m));
+        }
+        Arrays.sort(words);
+        out.append('|');
+        for (String word : words) {
+            out.append(word).append(',');
+        }
+    }
+
+    // Opens the file and indexes its records; a file for another store is started over,
+    // and a torn record at the end is cut off as in GameJournal
+    private FileChannel openFile() throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (ch.size() >= HEADER_BYTES) {
+            ch.read(header, 0);
+            header.flip();
+            if (header.getInt() == MAGIC && header.getInt() == VERSION && header.getLong() == fingerprint) {
+                long end = index(ch);
+                if (end < ch.size()) {
+                    System.err.println("Hint cache " + path + ": dropping " + (ch.size() - end) + " bytes of incomplete record");
+                    ch.truncate(end);
+                }
+                ch.position(ch.size());
+                return ch;
+            }
+        }
+        ch.truncate(0);
+        header.clear();
+        header.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).flip();
+        ch.write(header, 0);
+        ch.position(HEADER_BYTES);
+        onDisk.clear();
+        return ch;
+    }
+
+    // Fills onDisk from the records and returns where the valid ones end
+    private long index(FileChannel ch) throws IOException {
+        onDisk.clear();
+        long offset = HEADER_BYTES;
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER);
+        ByteBuffer body = ByteBuffer.allocate(MAX_RECORD);
+        while (true) {
+            head.clear();
+            if (ch.read(head, offset) < RECORD_HEADER) {
+                return offset;
+            }
+            head.flip();
+            int length = head.getInt();
+            int expected = head.getInt();
+            if (length < 17 || length > MAX_RECORD - RECORD_HEADER) {
+                return offset;
+            }
+            body.clear().limit(length);
+            if (ch.read(body, offset + RECORD_HEADER) < length) {
+                return offset;
+            }
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != expected) {
+                return offset;
+            }
+            body.flip();
+            onDisk.put(new Key(body.getLong(), body.getLong()), offset);
+            offset += RECORD_HEADER + length;
+        }
+    }
+
+    // The entry's ranking from the file, or null if it is not there
+    private List<Hint> readFromDisk(Key key) {
+        synchronized (file) {
+            Long offset = onDisk.get(key);
+            if (offset == null || channel == null) {
+                return null;
+            }
+            try {
+                return read(offset);
+            } catch (IOException e) {
+                onDisk.remove(key);
+                return null;
+            }
+        }
+    }
+
+    private List<Hint> read(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER);
+        channel.read(head, offset);
+        head.flip();
+        ByteBuffer body = ByteBuffer.allocate(head.getInt());
+        channel.read(body, offset + RECORD_HEADER);
+        body.flip();
+        body.position(16); // key
+        int count = body.get();
+        List<Hint> ranked = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] clue = new byte[body.getShort() & 0xFFFF];
+            body.get(clue);
+            ranked.add(new Hint(new String(clue, StandardCharsets.UTF_8), body.getInt()));
+        }
+        return Collections.unmodifiableList(ranked);
+    }
+
+    // Hands an evicted entry to the writer; called holding the cache monitor, so it does no I/O
+    private void spillLater(Key key, List<Hint> ranked) {
+        if (writer == null || writer.isShutdown()) {
+            return;
+        }
+        spilling.put(key, ranked);
+        writer.execute(() -> {
+            synchronized (file) {
+                spill(key, ranked);
+            }
+            synchronized (this) {
+                spilling.remove(key, ranked);
+            }
+        });
+    }
+
+    // Appends one entry unless the file already has it; a failed write only loses persistence.
+    // Runs on the writer thread holding the file lock.
+    private void spill(Key key, List<Hint> ranked) {
+        if (channel == null || onDisk.containsKey(key)) {
+            return;
+        }
+        try {
+            record.clear();
+            record.position(RECORD_HEADER);
+            record.putLong(key.hi).putLong(key.lo).put((byte) ranked.size());
+            for (Hint hint : ranked) {
+                byte[] clue = hint.clue.getBytes(StandardCharsets.UTF_8);
+                record.putShort((short) clue.length).put(clue).putInt(hint.number);
+            }
+            int length = record.position() - RECORD_HEADER;
+            crc.reset();
+            crc.update(record.array(), RECORD_HEADER, length);
+            record.putInt(0, length).putInt(4, (int) crc.getValue());
+            record.flip();
+            long offset = channel.size();
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            onDisk.put(key, offset);
+            if (channel.size() > maxDiskBytes) {
+                compact();
+            }
+        } catch (IOException | BufferOverflowException e) {
+            System.err.println("Hint cache spill failed: " + e.getMessage());
+        }
+    }
+
+    // Rewrites the file with the most recently written entries filling half the size limit;
+    // written aside and moved over the old file, so a crash leaves one or the other
+    private void compact() throws IOException {
+        List<Long> offsets = new ArrayList<>(onDisk.values());
+        offsets.sort(Collections.reverseOrder());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long budget = maxDiskBytes / 2;
+        long kept = HEADER_BYTES;
+        List<ByteBuffer> records = new ArrayList<>();
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER);
+        for (long offset : offsets) {
+            head.clear();
+            channel.read(head, offset);
+            int size = RECORD_HEADER + head.getInt(0);
+            if (kept + size > budget) {
+                break;
+            }
+            ByteBuffer r = ByteBuffer.allocate(size);
+            channel.read(r, offset);
+            r.flip();
+            records.add(r);
+            kept += size;
+        }
+        Collections.reverse(records); // oldest first, as they were appended
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(fingerprint);
+            header.flip();
+            out.write(header);
+            for (ByteBuffer r : records) {
+                while (r.hasRemaining()) {
+                    out.write(r);
+                }
+            }
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = openFile();
+    }
+}
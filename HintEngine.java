@@ -0,0 +1,525 @@
+//HintEngine.java
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+// In-process port of the scoring in codenamesAI.py, run over precomputed embeddings
+class HintEngine {
+    private static final double MULTI_WORD_SIM = 0.5;
+    private static final double ASSASSIN_VETO = -999;
+    private static final double ASSASSIN_WEIGHT = 2;
+    private static final String[] BAD_SUFFIXES = {"ly", "ing", "ed", "ness", "ful", "less"};
+    private static final int ANN_CANDIDATES = 100; // clues near the target centroid that get full scoring
+    private static final int ANN_PROBES = 12;
+
+    private final EmbeddingStore store;
+    private final List<String> allClues;
+    private volatile float[][] allClueVecs; // only once a board without a similarity matrix needs them
+    private final ClueIndex index; // only for vocabularies too large to score every clue
+
+    HintEngine(EmbeddingStore store) {
+        this.store = store;
+        allClues = store.getClues();
+        index = SimilarityMatrix.fits(store) ? null : ClueIndex.forStore(store);
+    }
+
+    private float[][] allClueVecs() {
+        float[][] vecs = allClueVecs;
+        if (vecs == null) {
+            vecs = new float[allClues.size()][];
+            for (int i = 0; i < vecs.length; i++) {
+                vecs[i] = store.unitVector(store.row(allClues.get(i)));
+            }
+            allClueVecs = vecs;
+        }
+        return vecs;
+    }
+
+    EmbeddingStore getStore() {
+        return store;
+    }
+
+    Hint suggest(CodenamesBoard board, String team, RiskProfile risk, Random rnd) {
+        return pick(ranked(board, team, risk), rnd);
+    }
+
+    // What suggest() picks from: the top 3 clues by score, best first, each with its number;
+    // empty once the team has nothing left to guess
+    List<Hint> ranked(CodenamesBoard board, String team, RiskProfile risk) {
+        Scoring scoring = scoringFor(board, team);
+        List<Hint> hints = new ArrayList<>(3);
+        if (!scoring.hasTargets()) {
+            return hints;
+        }
+
+        Integer[] order = rank(scoring, risk);
+        for (int i = 0; i < Math.min(3, order.length); i++) {
+            hints.add(new Hint(scoring.clue(order[i]).toUpperCase(), scoring.number(order[i], risk)));
+        }
+        return hints;
+    }
+
+    // Pick from top 3 for variety
+    static Hint pick(List<Hint> ranked, Random rnd) {
+        if (ranked.isEmpty()) {
+            return Hint.GAME_OVER;
+        }
+        return ranked.get(rnd.nextInt(ranked.size()));
+    }
+
+    // The best limit clues by score, best first, each with its number; clues the assassin vetoes are left out
+    List<Hint> topHints(CodenamesBoard board, String team, RiskProfile risk, int limit) {
+        List<Hint> hints = new ArrayList<>();
+        Scoring scoring = scoringFor(board, team);
+        if (!scoring.hasTargets()) {
+            return hints;
+        }
+        for (int i : rank(scoring, risk)) {
+            if (hints.size() == limit || scoring.score(i, risk) == ASSASSIN_VETO) {
+                break;
+            }
+            hints.add(new Hint(scoring.clue(i).toUpperCase(), scoring.number(i, risk)));
+        }
+        return hints;
+    }
+
+    // Clue indexes, highest score first
+    private static Integer[] rank(Scoring scoring, RiskProfile risk) {
+        int n = scoring.clueCount();
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            if ((i & 1023) == 0) checkInterrupted();
+            scores[i] = scoring.score(i, risk);
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        return order;
+    }
+
+    // Raw score for every candidate clue, keyed by clue
+    Map<String, Double> scoreAll(CodenamesBoard board, String team, RiskProfile risk) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        Scoring scoring = scoringFor(board, team);
+        if (!scoring.hasTargets()) {
+            return result;
+        }
+        for (int i = 0; i < scoring.clueCount(); i++) {
+            result.put(scoring.clue(i), scoring.score(i, risk));
+        }
+        return result;
+    }
+
+    // Lets a cancelled request (HintScheduler.invalidate) hand its thread back instead of scoring on
+    static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Hint request cancelled");
+        }
+    }
+
+    // Uses the board's similarity matrix when it was built from this engine's store; otherwise
+    // scores the clue vectors directly, shortlisted by the ANN index for large vocabularies
+    private Scoring scoringFor(CodenamesBoard board, String team) {
+        SimilarityMatrix matrix = board.getSimilarity();
+        if (matrix != null && matrix.getStore() == store) {
+            return new MatrixScoring(matrix, team);
+        }
+        return new VectorScoring(board, team);
+    }
+
+    static double nounBias(String word, double weight) {
+        // Simple heuristic: abstract verbs/adverbs often end with these
+        for (String suffix : BAD_SUFFIXES) {
+            if (word.endsWith(suffix)) return -weight;
+        }
+        return weight;
+    }
+
+    static float[] unit(float[] vec) {
+        double norm = 0;
+        for (float v : vec) norm += v * v;
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vec.length; i++) {
+            vec[i] *= scale;
+        }
+        return vec;
+    }
+
+    private interface Scoring {
+        boolean hasTargets();
+
+        int clueCount();
+
+        String clue(int clueIndex);
+
+        double score(int clueIndex, RiskProfile risk);
+
+        int number(int clueIndex, RiskProfile risk);
+    }
+
+    // Reads the running sums of a board's SimilarityMatrix, O(1) per candidate
+    private class MatrixScoring implements Scoring {
+        final SimilarityMatrix matrix;
+        final byte team;
+        final byte other;
+        final int[] candidates;
+
+        MatrixScoring(SimilarityMatrix matrix, String team) {
+            this.matrix = matrix;
+            this.team = Team.of(team);
+            this.other = Team.other(this.team);
+
+            // Remove board words
+            int[] eligible = new int[matrix.candidateCount()];
+            int n = 0;
+            for (int i = 0; i < eligible.length; i++) {
+                if (matrix.isEligible(i)) eligible[n++] = i;
+            }
+            candidates = Arrays.copyOf(eligible, n);
+        }
+
+        public boolean hasTargets() {
+            return matrix.unrevealedCount(team) > 0;
+        }
+
+        public int clueCount() {
+            return candidates.length;
+        }
+
+        public String clue(int clueIndex) {
+            return allClues.get(candidates[clueIndex]);
+        }
+
+        public double score(int clueIndex, RiskProfile risk) {
+            int c = candidates[clueIndex];
+            double targetScore = matrix.teamSum(team, c);
+            int strong = matrix.strongCount(team, c);
+
+            // Penalties
+            int badCount = matrix.unrevealedCount(other) + matrix.unrevealedCount(Team.NEUTRAL);
+            double penalty = badCount == 0 ? 0
+                : (matrix.teamSum(other, c) + matrix.teamSum(Team.NEUTRAL, c)) / badCount;
+
+            // Assassin hard block
+            double assassinSim = 0;
+            if (matrix.isAssassinLive()) {
+                assassinSim = matrix.assassinSim(c);
+                if (assassinSim > risk.assassinMax) {
+                    return ASSASSIN_VETO;
+                }
+            }
+
+            return targetScore
+                + strong * risk.multiWordBonus
+                - penalty * risk.penaltyWeight
+                + nounBias(allClues.get(c), risk.nounBias)
+                - assassinSim * ASSASSIN_WEIGHT;
+        }
+
+        // Dynamic number selection
+        public int number(int clueIndex, RiskProfile risk) {
+            int c = candidates[clueIndex];
+            double maxSim = Double.NEGATIVE_INFINITY;
+            for (int card = 0; card < matrix.cardCount(); card++) {
+                if (matrix.cardTeam(card) == team && !matrix.isRevealed(card)) {
+                    maxSim = Math.max(maxSim, matrix.sim(c, card));
+                }
+            }
+            double threshold = risk.threshold * maxSim;
+            int number = 0;
+            for (int card = 0; card < matrix.cardCount(); card++) {
+                if (matrix.cardTeam(card) == team && !matrix.isRevealed(card) && matrix.sim(c, card) > threshold) {
+                    number++;
+                }
+            }
+            return Math.max(1, Math.min(number, matrix.unrevealedCount(team)));
+        }
+    }
+
+    // Unit vectors for one hint request, split the same way as codenamesAI.py, so cosines are plain dot products
+    private class VectorScoring implements Scoring {
+        final List<float[]> targets = new ArrayList<>();
+        final List<float[]> bad = new ArrayList<>(); // opponent + neutral
+        final float[] assassin;
+        final List<String> clues = new ArrayList<>();
+        final List<float[]> clueVecs = new ArrayList<>();
+
+        VectorScoring(CodenamesBoard board, String team) {
+            String other = team.equals("BLUE") ? "RED" : "BLUE";
+            Set<String> onBoard = new HashSet<>();
+            for (String word : board.getUnrevealedWords()) {
+                onBoard.add(word.toUpperCase());
+            }
+            for (String word : board.getWordsByTeam(team)) {
+                if (!board.isRevealed(word)) targets.add(vectorOf(word));
+            }
+            for (String word : board.getWordsByTeam(other)) {
+                if (!board.isRevealed(word)) bad.add(vectorOf(word));
+            }
+            for (String word : board.getNeutralWords()) {
+                if (!board.isRevealed(word)) bad.add(vectorOf(word));
+            }
+            String assassinWord = board.getAssassin();
+            assassin = board.isRevealed(assassinWord) ? null : vectorOf(assassinWord);
+
+            // Remove board words
+            if (index == null) {
+                float[][] allClueVecs = allClueVecs();
+                for (int i = 0; i < allClues.size(); i++) {
+                    if (!onBoard.contains(allClues.get(i).toUpperCase())) {
+                        clues.add(allClues.get(i));
+                        clueVecs.add(allClueVecs[i]);
+                    }
+                }
+            } else if (!targets.isEmpty()) {
+                for (int row : index.search(targetCentroid(), ANN_CANDIDATES, ANN_PROBES)) {
+                    String clue = store.word(row);
+                    if (!onBoard.contains(clue.toUpperCase())) {
+                        clues.add(clue);
+                        clueVecs.add(unit(store.vector(row))); // not unitVector: that would cache every clue ever shortlisted
+                    }
+                }
+            }
+        }
+
+        // Mean direction of the target words: clues near it tend to cover several targets at once
+        private float[] targetCentroid() {
+            float[] centroid = new float[store.dim()];
+            for (float[] tv : targets) {
+                for (int d = 0; d < centroid.length; d++) {
+                    centroid[d] += tv[d];
+                }
+            }
+            return centroid;
+        }
+
+        private float[] vectorOf(String word) {
+            int row = store.row(word.toUpperCase());
+            if (row < 0) {
+                throw new IllegalStateException("No embedding for board word " + word);
+            }
+            return store.unitVector(row);
+        }
+
+        public boolean hasTargets() {
+            return !targets.isEmpty();
+        }
+
+        public int clueCount() {
+            return clues.size();
+        }
+
+        public String clue(int clueIndex) {
+            return clues.get(clueIndex);
+        }
+
+        public double score(int clueIndex, RiskProfile risk) {
+            float[] vec = clueVecs.get(clueIndex);
+
+            // Target reward and multi-word bonus
+            double targetScore = 0;
+            int strong = 0;
+            for (float[] tv : targets) {
+                double sim = SimilarityMatrix.dot(vec, tv);
+                targetScore += sim;
+                if (sim > MULTI_WORD_SIM) strong++;
+            }
+
+            // Penalties
+            double penalty = 0;
+            if (!bad.isEmpty()) {
+                for (float[] bv : bad) {
+                    penalty += SimilarityMatrix.dot(vec, bv);
+                }
+                penalty /= bad.size();
+            }
+
+            // Assassin hard block
+            double assassinSim = 0;
+            if (assassin != null) {
+                assassinSim = SimilarityMatrix.dot(vec, assassin);
+                if (assassinSim > risk.assassinMax) {
+                    return ASSASSIN_VETO;
+                }
+            }
+
+            return targetScore
+                + strong * risk.multiWordBonus
+                - penalty * risk.penaltyWeight
+                + nounBias(clues.get(clueIndex), risk.nounBias)
+                - assassinSim * ASSASSIN_WEIGHT;
+        }
+
+        // Dynamic number selection
+        public int number(int clueIndex, RiskProfile risk) {
+            float[] vec = clueVecs.get(clueIndex);
+            double[] sims = new double[targets.size()];
+            double maxSim = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < sims.length; i++) {
+                sims[i] = SimilarityMatrix.dot(vec, targets.get(i));
+                maxSim = Math.max(maxSim, sims[i]);
+            }
+            double threshold = risk.threshold * maxSim;
+            int number = 0;
+            for (double s : sims) {
+                if (s > threshold) number++;
+            }
+            return Math.max(1, Math.min(number, targets.size()));
+        }
+    }
+
+    // Parity check against the Python scorer:
+    //   java HintEngine --parity [boards]
+    // Generates random boards, asks "codenamesAI.py --scores" for its clue scores
+    // and compares them with this engine's.
+    //
+    // Quantized store check against the float32 one:
+    //   java HintEngine --agreement <quantized store> [boards]
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1 && args[0].equals("--agreement")) {
+            agreement(EmbeddingStore.load(codenamesRunner.EMBEDDINGS_FILE), EmbeddingStore.load(args[1]),
+                args.length > 2 ? Integer.parseInt(args[2]) : 2000);
+            return;
+        }
+        if (args.length == 0 || !args[0].equals("--parity")) {
+            System.out.println("Usage: java HintEngine --parity [boards] | --agreement <quantized store> [boards]");
+            return;
+        }
+        int boards = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        HintEngine engine = new HintEngine(EmbeddingStore.load(codenamesRunner.EMBEDDINGS_FILE));
+        Random rnd = new Random(42);
+        String[] risks = {"SAFE", "NORMAL", "AGGRESSIVE"};
+        File stateFile = File.createTempFile("parity", ".json");
+        stateFile.deleteOnExit();
+
+        int compared = 0;
+        int mismatches = 0;
+        for (int b = 0; b < boards; b++) {
+            CodenamesBoard board = new CodenamesBoard(engine.getStore());
+            board.generateBoard(rnd.nextBoolean() ? "RED" : "BLUE");
+            List<String> words = board.getAllWords();
+            int reveals = rnd.nextInt(10);
+            for (int i = 0; i < reveals; i++) {
+                board.reveal(words.get(rnd.nextInt(words.size())));
+            }
+            String team = rnd.nextBoolean() ? "RED" : "BLUE";
+            String risk = risks[rnd.nextInt(risks.length)];
+
+            try (FileWriter out = new FileWriter(stateFile)) {
+                out.write(codenamesRunner.stateToJson(board, team, risk));
+            }
+            Process process = new ProcessBuilder("python3", codenamesRunner.PYTHON_SCRIPT, "--scores", stateFile.getPath())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+            String pythonJson;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                pythonJson = br.readLine();
+            }
+            if (process.waitFor() != 0 || pythonJson == null) {
+                throw new IOException("Python scorer failed on board " + b);
+            }
+            Map<String, Double> pythonScores = new HashMap<>();
+            JsonCodec.Reader reader = new JsonCodec.Reader(pythonJson);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                pythonScores.put(reader.nextName(), reader.nextDouble());
+            }
+            reader.endObject();
+
+            for (Map.Entry<String, Double> entry : engine.scoreAll(board, team, RiskProfile.forName(risk)).entrySet()) {
+                Double expected = pythonScores.get(entry.getKey());
+                compared++;
+                if (expected == null || Math.abs(expected - entry.getValue()) > 1e-4) {
+                    mismatches++;
+                    System.out.println("Mismatch board " + b + " " + team + "/" + risk + " clue " + entry.getKey()
+                        + ": java=" + entry.getValue() + " python=" + expected);
+                }
+            }
+        }
+        System.out.println("Compared " + compared + " clue scores over " + boards + " boards, " + mismatches + " mismatches");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Plays the same boards through both stores: how often the quantized ranking still picks the
+    // same clues (the hint is drawn from the top 3), how far the scores move, and what it saves
+    private static void agreement(EmbeddingStore reference, EmbeddingStore quantized, int boards) {
+        HintEngine exact = new HintEngine(reference);
+        HintEngine approx = new HintEngine(quantized);
+        RiskProfile[] risks = {RiskProfile.SAFE, RiskProfile.NORMAL, RiskProfile.AGGRESSIVE};
+        int topOne = 0;
+        int topThree = 0;
+        int sameNumber = 0;
+        double maxDiff = 0;
+        double sumDiff = 0;
+        long scored = 0;
+        for (int b = 0; b < boards; b++) {
+            Random rnd = new Random(b);
+            String team = rnd.nextBoolean() ? "RED" : "BLUE";
+            RiskProfile risk = risks[rnd.nextInt(risks.length)];
+            long seed = rnd.nextLong();
+            int reveals = rnd.nextInt(12);
+            CodenamesBoard exactBoard = sampleBoard(reference, team, seed, reveals);
+            CodenamesBoard approxBoard = sampleBoard(quantized, team, seed, reveals);
+
+            List<Hint> want = exact.topHints(exactBoard, team, risk, 3);
+            List<Hint> got = approx.topHints(approxBoard, team, risk, 3);
+            if (!want.isEmpty() && !got.isEmpty() && want.get(0).clue.equals(got.get(0).clue)) {
+                topOne++;
+                if (want.get(0).number == got.get(0).number) sameNumber++;
+            }
+            for (Hint h : got) {
+                for (Hint w : want) {
+                    if (w.clue.equals(h.clue)) topThree++;
+                }
+            }
+            Map<String, Double> approxScores = approx.scoreAll(approxBoard, team, risk);
+            for (Map.Entry<String, Double> e : exact.scoreAll(exactBoard, team, risk).entrySet()) {
+                Double q = approxScores.get(e.getKey());
+                if (q == null || e.getValue() == ASSASSIN_VETO || q == ASSASSIN_VETO) continue;
+                double diff = Math.abs(q - e.getValue());
+                maxDiff = Math.max(maxDiff, diff);
+                sumDiff += diff;
+                scored++;
+            }
+        }
+        System.out.printf("Boards:              %d%n", boards);
+        System.out.printf("Top clue agreement:  %.2f%% (same number %.2f%%)%n", 100.0 * topOne / boards, 100.0 * sameNumber / boards);
+        System.out.printf("Top-3 overlap:       %.2f%%%n", 100.0 * topThree / (3.0 * boards));
+        System.out.printf("Score error:         mean %.5f, max %.5f%n", sumDiff / Math.max(1, scored), maxDiff);
+        System.out.printf("Vector data:         %d -> %d bytes (%.1fx smaller)%n",
+            reference.dataBytes(), quantized.dataBytes(), (double) reference.dataBytes() / quantized.dataBytes());
+
+        // Dealing builds the similarity matrix, which is where the vectors are read; then one clue
+        for (int pass = 0; pass < 2; pass++) { // the first pass warms the JIT
+            double exactRate = boardsPerSecond(exact, boards);
+            double approxRate = boardsPerSecond(approx, boards);
+            if (pass == 1) {
+                System.out.printf("Deal + hint:         %.0f -> %.0f boards/sec (%.2fx)%n", exactRate, approxRate, approxRate / exactRate);
+            }
+        }
+    }
+
+    private static CodenamesBoard sampleBoard(EmbeddingStore store, String team, long seed, int reveals) {
+        CodenamesBoard board = new CodenamesBoard(store);
+        board.generateBoard(team, new Random(seed));
+        Random rnd = new Random(~seed);
+        for (int i = 0; i < reveals; i++) {
+            board.revealCard(rnd.nextInt(board.size()));
+        }
+        return board;
+    }
+
+    private static double boardsPerSecond(HintEngine engine, int boards) {
+        Random rnd = new Random(1);
+        Object sink = null;
+        long start = System.nanoTime();
+        for (int b = 0; b < boards; b++) {
+            sink = engine.suggest(sampleBoard(engine.getStore(), "RED", b, 0), "RED", RiskProfile.NORMAL, rnd);
+        }
+        CodenamesBench.sink = sink;
+        return boards / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,297 @@
+//HintMetrics.java
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Where a clue's time goes. Every stage of the hint pipeline records into a
+// latency histogram per backend ("engine" for a HintEngine scoring pass,
+// "cache" for a HintCache hit, "search" for ClueSearch, "worker" for the
+// Python process, "fallback" for the deadline fallback), and each
+// hint and reveal is also emitted as a JFR event ("java
+// -XX:StartFlightRecording ..." to capture them).
+//
+// Samples are taken where clues are served (the GUI's hint fetch, the server,
+// the worker client), never inside HintEngine, so simulations and searches
+// that score thousands of boards add nothing here.
+//
+// Snapshots are available as Prometheus text or JSON: from the server's
+// /metrics and /metrics.json endpoints, or written at exit with
+// -Dcodenames.metrics=PREFIX (PREFIX.prom and PREFIX.json).
+final class HintMetrics {
+    enum Stage {
+        SERIALIZE,      // state -> JSON frame for the worker
+        PROCESS_START,  // worker launch until its ready frame
+        MODEL_LOAD,     // model or embedding store load (Python, or the Java engine's store)
+        ENCODE,         // board/clue vectors for one request (worker; the engine's are in the board's similarity matrix)
+        SCORE,          // clue scoring and selection; for the engine the whole suggest call
+        PARSE,          // reply frame -> Hint
+        APPLY,          // hint landing on the game (UI update)
+        TOTAL,          // request to applied clue
+        FIRST_CLUE;     // process start to the first clue on screen, once per launch
+
+        final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    // Log-linear latency histogram: 4 buckets per power of two of microseconds (~19% resolution)
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0) return;
+            double micros = Math.max(1, nanos / 1000.0);
+            int bucket = Math.min(BUCKETS - 1, (int) (Math.log(micros) / Math.log(2) * SUB_BUCKETS));
+            counts.incrementAndGet(bucket);
+            count.increment();
+            sumNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double sumSeconds() {
+            return sumNanos.sum() / 1e9;
+        }
+
+        double maxSeconds() {
+            return maxNanos.get() / 1e9;
+        }
+
+        // Upper edge of the bucket holding the q-th sample, capped at the observed max
+        double quantileSeconds(double q) {
+            long total = count();
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    double upperMicros = Math.pow(2, (i + 1) / (double) SUB_BUCKETS);
+                    return Math.min(upperMicros / 1e6, maxSeconds());
+                }
+            }
+            return maxSeconds();
+        }
+    }
+
+    @Name("codenames.Hint")
+    @Label("Spymaster Hint")
+    @Category("Codenames")
+    static final class HintEvent extends Event {
+        @Label("Team")
+        String team;
+        @Label("Risk")
+        String risk;
+        @Label("Clue")
+        String clue;
+        @Label("Number")
+        int number;
+        @Label("Source")
+        String source;
+    }
+
+    @Name("codenames.Reveal")
+    @Label("Card Reveal")
+    @Category("Codenames")
+    static final class RevealEvent extends Event {
+        @Label("Word")
+        String word;
+        @Label("Guessing Team")
+        String team;
+        @Label("Card Team")
+        String cardTeam;
+        @Label("Outcome")
+        String outcome;
+        @Label("Hint Age")
+        @Timespan(Timespan.NANOSECONDS)
+        long sinceHint;
+    }
+
+    private static final Map<Stage, Map<String, Histogram>> stages = new EnumMap<>(Stage.class); // by backend
+    private static final Map<String, LongAdder> hints = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> reveals = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> events = new ConcurrentHashMap<>();
+
+    static {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    private HintMetrics() {
+    }
+
+    static void record(Stage stage, String backend, long nanos) {
+        histogram(stage, backend).record(nanos);
+    }
+
+    static void recordMillis(Stage stage, String backend, double millis) {
+        if (millis >= 0) {
+            record(stage, backend, (long) (millis * 1e6));
+        }
+    }
+
+    // Things that happen along the way, e.g. "worker_restart"
+    static void count(String event) {
+        events.computeIfAbsent(event, k -> new LongAdder()).increment();
+    }
+
+    static Histogram histogram(Stage stage, String backend) {
+        return stages.get(stage).computeIfAbsent(backend, k -> new Histogram());
+    }
+
+    // Call with the event begun when the hint was requested; source is e.g. "engine", "worker", "fallback"
+    static void hint(HintEvent event, String team, String risk, Hint hint, String source) {
+        hints.computeIfAbsent(source, k -> new LongAdder()).increment();
+        event.end();
+        if (event.shouldCommit()) {
+            event.team = team;
+            event.risk = risk;
+            event.clue = hint.clue;
+            event.number = hint.number;
+            event.source = source;
+            event.commit();
+        }
+    }
+
+    static void reveal(String word, String team, String cardTeam, GameEngine.Outcome outcome, long sinceHintNanos) {
+        reveals.computeIfAbsent(outcome.name(), k -> new LongAdder()).increment();
+        RevealEvent event = new RevealEvent();
+        if (event.shouldCommit()) {
+            event.word = word;
+            event.team = team;
+            event.cardTeam = cardTeam;
+            event.outcome = outcome.name();
+            event.sinceHint = sinceHintNanos;
+            event.commit();
+        }
+    }
+
+    static String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP codenames_hint_stage_seconds Latency of each hint pipeline stage, by backend\n");
+        out.append("# TYPE codenames_hint_stage_seconds summary\n");
+        for (Stage stage : Stage.values()) {
+            for (Map.Entry<String, Histogram> e : stages.get(stage).entrySet()) {
+                Histogram h = e.getValue();
+                String labels = "stage=\"" + stage.label + "\",backend=\"" + e.getKey() + "\"";
+                out.append(sample("codenames_hint_stage_seconds", labels + ",quantile=\"0.5\"", h.quantileSeconds(0.5)));
+                out.append(sample("codenames_hint_stage_seconds", labels + ",quantile=\"0.99\"", h.quantileSeconds(0.99)));
+                out.append(sample("codenames_hint_stage_seconds_sum", labels, h.sumSeconds()));
+                out.append(sample("codenames_hint_stage_seconds_count", labels, h.count()));
+            }
+        }
+        out.append("# HELP codenames_hint_stage_max_seconds Slowest sample seen for each stage and backend\n");
+        out.append("# TYPE codenames_hint_stage_max_seconds gauge\n");
+        for (Stage stage : Stage.values()) {
+            for (Map.Entry<String, Histogram> e : stages.get(stage).entrySet()) {
+                out.append(sample("codenames_hint_stage_max_seconds",
+                    "stage=\"" + stage.label + "\",backend=\"" + e.getKey() + "\"", e.getValue().maxSeconds()));
+            }
+        }
+        out.append("# HELP codenames_hints_total Hints given, by source\n");
+        out.append("# TYPE codenames_hints_total counter\n");
+        for (Map.Entry<String, LongAdder> e : hints.entrySet()) {
+            out.append(sample("codenames_hints_total", "source=\"" + e.getKey() + "\"", e.getValue().sum()));
+        }
+        out.append("# HELP codenames_reveals_total Cards revealed, by outcome\n");
+        out.append("# TYPE codenames_reveals_total counter\n");
+        for (Map.Entry<String, LongAdder> e : reveals.entrySet()) {
+            out.append(sample("codenames_reveals_total", "outcome=\"" + e.getKey() + "\"", e.getValue().sum()));
+        }
+        out.append("# HELP codenames_hint_events_total Hint service events, by kind\n");
+        out.append("# TYPE codenames_hint_events_total counter\n");
+        for (Map.Entry<String, LongAdder> e : events.entrySet()) {
+            out.append(sample("codenames_hint_events_total", "event=\"" + e.getKey() + "\"", e.getValue().sum()));
+        }
+        return out.toString();
+    }
+
+    static void writeJson(JsonCodec.Writer json) {
+        json.beginObject();
+        json.name("stages").beginObject();
+        for (Stage stage : Stage.values()) {
+            json.name(stage.label).beginObject();
+            for (Map.Entry<String, Histogram> e : stages.get(stage).entrySet()) {
+                Histogram h = e.getValue();
+                long n = h.count();
+                json.name(e.getKey()).beginObject();
+                json.name("count").value(n);
+                json.name("meanMs").value(n == 0 ? 0 : h.sumSeconds() * 1e3 / n);
+                json.name("p50Ms").value(h.quantileSeconds(0.5) * 1e3);
+                json.name("p99Ms").value(h.quantileSeconds(0.99) * 1e3);
+                json.name("maxMs").value(h.maxSeconds() * 1e3);
+                json.endObject();
+            }
+            json.endObject();
+        }
+        json.endObject();
+        json.name("hints");
+        writeCounts(json, hints);
+        json.name("reveals");
+        writeCounts(json, reveals);
+        json.name("events");
+        writeCounts(json, events);
+        json.endObject();
+    }
+
+    static String toJson() {
+        JsonCodec.Writer json = new JsonCodec.Writer();
+        writeJson(json);
+        return json.toString();
+    }
+
+    // Writes PREFIX.prom and PREFIX.json at exit when -Dcodenames.metrics=PREFIX is set
+    static void dumpAtExitIfRequested() {
+        String prefix = System.getProperty("codenames.metrics");
+        if (prefix == null || prefix.isEmpty()) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.writeString(Paths.get(prefix + ".prom"), toPrometheus());
+                Files.writeString(Paths.get(prefix + ".json"), toJson() + "\n");
+            } catch (IOException e) {
+                System.err.println("Could not write metrics: " + e.getMessage());
+            }
+        }, "metrics-dump"));
+    }
+
+    private static void writeCounts(JsonCodec.Writer json, Map<String, LongAdder> counts) {
+        json.beginObject();
+        for (Map.Entry<String, LongAdder> e : counts.entrySet()) {
+            json.name(e.getKey()).value(e.getValue().sum());
+        }
+        json.endObject();
+    }
+
+    private static String sample(String name, String labels, double value) {
+        return name + "{" + labels + "} " + value + "\n";
+    }
+
+    private static String sample(String name, String labels, long value) {
+        return name + "{" + labels + "} " + value + "\n";
+    }
+}
@@ -0,0 +1,89 @@
+//HintPrefetcher.java
+
+import java.util.concurrent.*;
+
+// Works out the next team's clue while the current team is still guessing.
+//
+// A speculation is keyed by the board, its revealed mask, the team and the
+// risk mode, and runs on a snapshot so the live board can keep changing
+// underneath it. Starting a new speculation cancels the previous one, so at
+// most one is ever queued or running; take() hands back the result only if
+// the key still matches the position the caller is asking about. Hits and
+// misses are counted in HintMetrics as prefetch_hit and prefetch_miss.
+class HintPrefetcher {
+    interface Fetcher {
+        ServedHint fetch(CodenamesBoard board, String team, String risk) throws Exception;
+    }
+
+    private final Fetcher fetcher;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "hint-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private CodenamesBoard board;
+    private long revealedMask;
+    private String team;
+    private String risk;
+    private Future<ServedHint> speculation;
+
+    HintPrefetcher(Fetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    // Starts computing team's next clue for the board as it stands now, replacing any older guess
+    synchronized void speculate(CodenamesBoard board, String team, String risk) {
+        if (speculation != null && matches(board, team, risk)) {
+            return;
+        }
+        cancel();
+        CodenamesBoard snapshot = board.copy();
+        this.board = board;
+        this.revealedMask = board.getRevealedMask();
+        this.team = team;
+        this.risk = risk;
+        speculation = executor.submit(() -> fetcher.fetch(snapshot, team, risk));
+    }
+
+    // The speculated clue for this exact position, waiting for it if it is still being computed,
+    // or null if nothing usable was speculated
+    ServedHint take(CodenamesBoard board, String team, String risk) throws InterruptedException {
+        Future<ServedHint> ready;
+        synchronized (this) {
+            if (speculation == null || !matches(board, team, risk)) {
+                HintMetrics.count("prefetch_miss");
+                cancel();
+                return null;
+            }
+            ready = speculation;
+            speculation = null;
+        }
+        try {
+            ServedHint hint = ready.get();
+            HintMetrics.count("prefetch_hit");
+            return hint;
+        } catch (ExecutionException | CancellationException e) {
+            HintMetrics.count("prefetch_miss");
+            return null;
+        }
+    }
+
+    synchronized void cancel() {
+        if (speculation != null) {
+            speculation.cancel(true);
+            speculation = null;
+        }
+        board = null;
+    }
+
+    void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private boolean matches(CodenamesBoard board, String team, String risk) {
+        return this.board == board && revealedMask == board.getRevealedMask()
+            && this.team.equals(team) && this.risk.equals(risk);
+    }
+}
@@ -0,0 +1,170 @@
+//HintScheduler.java
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Runs hint requests on a small bounded pool with a deadline per request.
+//
+// Each request starts a new generation; a result is delivered only while its
+// generation is still the current one, so a clue computed for a turn (or game)
+// that has since ended is dropped instead of landing on the new board. Tasks
+// of older generations are cancelled (interrupted, and purged from the queue)
+// when a new generation starts, so they do not hold the pool. When the primary
+// source misses the deadline, fails, or the pool is saturated, the cheap
+// fallback source answers instead and the slow task is cancelled.
+//
+// Outcomes are counted in HintMetrics as scheduler_completed, _fallback,
+// _timeout, _rejected, _stale and _cancelled.
+class HintScheduler {
+    interface Source {
+        ServedHint fetch(CodenamesBoard board, String team, String risk) throws Exception;
+    }
+
+    static final class Result {
+        final long generation;
+        final Hint hint;
+        final String source; // the backend that produced the hint, as the source reported it
+        final boolean fallback;
+        final Exception error; // set only when the fallback failed too
+
+        Result(long generation, ServedHint served, boolean fallback, Exception error) {
+            this.generation = generation;
+            this.hint = served == null ? null : served.hint;
+            this.source = served == null ? null : served.source;
+            this.fallback = fallback;
+            this.error = error;
+        }
+    }
+
+    private final Source primary;
+    private final Source fallback;
+    private final long deadlineMs;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(daemon("hint-deadline"));
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<Long, Future<?>> running = new ConcurrentHashMap<>(); // by generation
+
+    HintScheduler(Source primary, Source fallback, long deadlineMs, int threads, int queueSize) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.deadlineMs = deadlineMs;
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize), daemon("hint-scheduler"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Starts a new generation, which makes every outstanding request stale, and asks for a clue.
+    // The callback runs on a scheduler thread at most once, and only if the request is still current.
+    long request(CodenamesBoard board, String team, String risk, Consumer<Result> callback) {
+        long gen = generation.incrementAndGet();
+        cancelOlderThan(gen);
+        AtomicBoolean claimed = new AtomicBoolean();
+
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                ServedHint hint;
+                try {
+                    hint = primary.fetch(board, team, risk);
+                } catch (InterruptedException | CancellationException e) {
+                    return; // cancelled at the deadline or by a newer generation
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return; // interrupted inside I/O (InterruptedIOException)
+                    }
+                    if (claimed.compareAndSet(false, true)) {
+                        System.err.println("Hint failed, using fallback: " + e.getMessage());
+                        deliverFallback(gen, board, team, risk, callback);
+                    }
+                    return;
+                } finally {
+                    running.remove(gen);
+                }
+                if (claimed.compareAndSet(false, true)) {
+                    HintMetrics.count("scheduler_completed");
+                    deliver(new Result(gen, hint, false, null), callback);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            HintMetrics.count("scheduler_rejected");
+            claimed.set(true);
+            deliverFallback(gen, board, team, risk, callback);
+            return gen;
+        }
+        running.put(gen, task);
+        if (task.isDone()) {
+            running.remove(gen); // finished before it was put
+        }
+
+        timer.schedule(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                HintMetrics.count("scheduler_timeout");
+                task.cancel(true);
+                System.err.println("Hint missed its " + deadlineMs + " ms deadline, using fallback");
+                deliverFallback(gen, board, team, risk, callback);
+            }
+        }, deadlineMs, TimeUnit.MILLISECONDS);
+        return gen;
+    }
+
+    // Drops whatever is in flight, e.g. when a new game starts
+    void invalidate() {
+        cancelOlderThan(generation.incrementAndGet());
+    }
+
+    boolean isCurrent(long gen) {
+        return generation.get() == gen;
+    }
+
+    // Interrupts the tasks of stale generations and frees the queue slots of those not yet started
+    private void cancelOlderThan(long gen) {
+        boolean cancelled = false;
+        for (Map.Entry<Long, Future<?>> e : running.entrySet()) {
+            if (e.getKey() < gen && running.remove(e.getKey(), e.getValue())) {
+                if (e.getValue().cancel(true)) {
+                    HintMetrics.count("scheduler_cancelled");
+                    cancelled = true;
+                }
+            }
+        }
+        if (cancelled) {
+            executor.purge();
+        }
+    }
+
+    void shutdown() {
+        invalidate();
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void deliverFallback(long gen, CodenamesBoard board, String team, String risk, Consumer<Result> callback) {
+        HintMetrics.count("scheduler_fallback");
+        Result result;
+        try {
+            result = new Result(gen, fallback.fetch(board, team, risk), true, null);
+        } catch (Exception e) {
+            result = new Result(gen, null, true, e);
+        }
+        deliver(result, callback);
+    }
+
+    private void deliver(Result result, Consumer<Result> callback) {
+        if (!isCurrent(result.generation)) {
+            HintMetrics.count("scheduler_stale");
+            return;
+        }
+        callback.accept(result);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
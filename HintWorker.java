@@ -0,0 +1,428 @@
+//HintWorker.java
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Long-lived "python3 codenamesAI.py --serve" process, kept warm across turns and games.
+//
+// Talks the framed protocol described in codenamesAI.py over the process's
+// stdin/stdout: each message is a 4-byte big-endian length plus UTF-8 JSON,
+// and replies are matched to requests by "id". Any number of games can have
+// requests in flight on the same worker.
+//
+// A worker that has gone quiet is pinged before its next request and on an
+// idle timer, and replaced when it does not answer, so a hung process is
+// found before a player is left waiting on it. Requests still waiting on the
+// replaced process fail at once and are retried on the new one.
+class HintWorker {
+    private static final long START_TIMEOUT_MS = 120_000; // model load on a cold machine
+    private static final long PING_TIMEOUT_MS = 2_000;
+    private static final long HINT_TIMEOUT_MS = 60_000;
+    private static final long QUIET_MS = 1_000;        // no reply for this long: ping before the next request
+    private static final long IDLE_CHECK_MS = 30_000;  // how often an idle worker is pinged
+    private static final long READY_ID = 0;
+
+    private final String script;
+    private final File workingDir;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, Call> pending = new ConcurrentHashMap<>();
+    private final JsonCodec.Writer frame = new JsonCodec.Writer(); // guarded by this, like toWorker
+    private final ScheduledExecutorService idleCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "hint-worker-ping");
+        t.setDaemon(true);
+        return t;
+    });
+    private Process process;
+    private OutputStream toWorker;
+    private volatile long lastReplyAt = System.nanoTime();
+
+    // One decoded reply frame; fields absent from the message keep their defaults
+    static final class Reply {
+        long id = -1;
+        String type = "";
+        String clue;
+        int number;
+        String error;
+        List<Reply> hints; // hint_batch replies, one per state in request order
+        double loadMs = -1;   // worker-side stage timings, when the worker reports them
+        double encodeMs = -1;
+        double scoreMs = -1;
+
+        static Reply read(JsonCodec.Reader r) throws IOException {
+            Reply reply = new Reply();
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "id":
+                        reply.id = r.nextLong();
+                        break;
+                    case "type":
+                        reply.type = r.nextString();
+                        break;
+                    case "clue":
+                        reply.clue = r.nextString();
+                        break;
+                    case "number":
+                        reply.number = r.nextInt();
+                        break;
+                    case "error":
+                        reply.error = r.nextString();
+                        break;
+                    case "hints":
+                        reply.hints = new ArrayList<>();
+                        r.beginArray();
+                        while (r.hasNext()) {
+                            reply.hints.add(read(r));
+                        }
+                        r.endArray();
+                        break;
+                    case "load_ms":
+                        reply.loadMs = r.nextDouble();
+                        break;
+                    case "encode_ms":
+                        reply.encodeMs = r.nextDouble();
+                        break;
+                    case "score_ms":
+                        reply.scoreMs = r.nextDouble();
+                        break;
+                    default:
+                        r.skipValue();
+                }
+            }
+            r.endObject();
+            return reply;
+        }
+    }
+
+    private interface Body {
+        void write(JsonCodec.Writer w);
+    }
+
+    // A request waiting for its reply, and the process it was written to
+    private static final class Call {
+        final long id;
+        final Process process;
+        final CompletableFuture<Reply> reply = new CompletableFuture<>();
+
+        Call(long id, Process process) {
+            this.id = id;
+            this.process = process;
+        }
+    }
+
+    HintWorker(String script, File workingDir) {
+        this.script = script;
+        this.workingDir = workingDir;
+        idleCheck.scheduleWithFixedDelay(this::checkIdle, IDLE_CHECK_MS, IDLE_CHECK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void start() throws IOException {
+        CompletableFuture<Reply> ready;
+        Process started;
+        long launchedAt;
+        synchronized (this) {
+            if (process != null && process.isAlive()) {
+                return;
+            }
+            ProcessBuilder pb = new ProcessBuilder("python3", script, "--serve");
+            pb.directory(workingDir);
+            launchedAt = System.nanoTime();
+            started = pb.start();
+            process = started;
+            Call hello = new Call(READY_ID, started);
+            pending.put(READY_ID, hello);
+            hello.reply.whenComplete((r, e) -> pending.remove(READY_ID, hello));
+            ready = hello.reply;
+            toWorker = started.getOutputStream();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(started.getInputStream()));
+            BufferedReader err = new BufferedReader(new InputStreamReader(started.getErrorStream()));
+            pump("hint-worker-replies", () -> readReplies(in), () -> failPending(started, "Hint worker exited"));
+            pump("hint-worker-stderr", () -> {
+                String line;
+                while ((line = err.readLine()) != null) {
+                    System.err.println("Python: " + line);
+                }
+            }, () -> { });
+        }
+
+        try {
+            Reply hello = await(ready, START_TIMEOUT_MS);
+            HintMetrics.record(HintMetrics.Stage.PROCESS_START, "worker", System.nanoTime() - launchedAt);
+            HintMetrics.recordMillis(HintMetrics.Stage.MODEL_LOAD, "worker", hello.loadMs);
+        } catch (IOException e) {
+            stop();
+            throw new IOException("Hint worker failed to start (" + e.getMessage() + ")", e);
+        }
+        System.out.println("Hint worker started (pid " + started.pid() + ")");
+    }
+
+    boolean isHealthy() {
+        return isHealthy(current());
+    }
+
+    // A ping that times out only counts against the process if nothing was sent to it
+    // first: the worker answers in order, so a ping behind a long batch waits for the batch
+    private boolean isHealthy(Process p) {
+        if (p == null || !p.isAlive()) {
+            return false;
+        }
+        Call ping;
+        try {
+            ping = dispatch("ping", null);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            return await(ping.reply, PING_TIMEOUT_MS).type.equals("pong");
+        } catch (IOException e) {
+            return queuedBehind(ping);
+        }
+    }
+
+    private boolean queuedBehind(Call ping) {
+        for (Call call : pending.values()) {
+            if (call.id != READY_ID && call.id < ping.id && call.process == ping.process) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized Process current() {
+        return process;
+    }
+
+    // Scores a whole batch in one frame, so the worker encodes and ranks every board in one pass
+    List<Hint> requestHints(List<HintBatcher.Request> batch) throws IOException {
+        Reply reply = callWithRestart("hint_batch", w -> {
+            w.name("states").beginArray();
+            for (HintBatcher.Request r : batch) {
+                JsonCodec.writeState(w, r.board, r.team, r.risk);
+            }
+            w.endArray();
+        });
+        if (reply.error != null) {
+            throw new IOException("Hint worker error: " + reply.error);
+        }
+        if (reply.hints == null || reply.hints.size() != batch.size()) {
+            throw new IOException("Hint worker returned the wrong number of hints");
+        }
+        List<Hint> hints = new ArrayList<>(batch.size());
+        for (Reply hint : reply.hints) {
+            hints.add(toHint(hint));
+        }
+        return hints;
+    }
+
+    private Reply callWithRestart(String type, Body body) throws IOException {
+        Process used = null;
+        try {
+            start();
+            used = current();
+            if (isQuiet() && !isHealthy(used)) {
+                restart(used, "no answer to ping");
+                used = current();
+            }
+            return call(type, body, HINT_TIMEOUT_MS);
+        } catch (IOException e) {
+            restart(used, e.getMessage());
+            return call(type, body, HINT_TIMEOUT_MS);
+        }
+    }
+
+    // No reply for a while and nothing in flight (the worker answers in order, so a ping
+    // sent behind a long batch would wait for it and look like a hang)
+    private boolean isQuiet() {
+        return pending.isEmpty() && System.nanoTime() - lastReplyAt > TimeUnit.MILLISECONDS.toNanos(QUIET_MS);
+    }
+
+    // Replaces the failed process, unless another caller already has
+    private void restart(Process failed, String reason) throws IOException {
+        if (stopIfCurrent(failed)) {
+            System.err.println("Hint worker unhealthy, restarting: " + reason);
+            HintMetrics.count("worker_restart");
+        }
+        start();
+    }
+
+    // Idle timer: pings a running worker nobody is using, so a hang is caught between games
+    private void checkIdle() {
+        Process p = current();
+        if (p == null) {
+            return;
+        }
+        if (isQuiet() && !isHealthy(p)) {
+            try {
+                restart(p, "no answer to idle ping");
+            } catch (IOException e) {
+                System.err.println("Could not restart hint worker: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Hint toHint(Reply reply) throws IOException {
+        if (reply.error != null) {
+            throw new IOException("Hint worker error: " + reply.error);
+        }
+        if (reply.clue == null) {
+            throw new IOException("Hint worker reply has no clue");
+        }
+        return new Hint(reply.clue, reply.number);
+    }
+
+    void shutdown() {
+        Process p;
+        synchronized (this) {
+            p = process;
+            if (p != null && p.isAlive()) {
+                try {
+                    send(nextId.getAndIncrement(), "quit", null);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        idleCheck.shutdownNow();
+        if (p != null) {
+            try {
+                p.waitFor(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        stop();
+    }
+
+    private Reply call(String type, Body body, long timeoutMs) throws IOException {
+        return await(dispatch(type, body).reply, timeoutMs);
+    }
+
+    // Registers and writes a request; ids are taken under the lock, so they follow the order
+    // requests reach the worker. The entry goes once the reply arrives or the wait gives up.
+    private synchronized Call dispatch(String type, Body body) throws IOException {
+        if (process == null) {
+            throw new IOException("Hint worker is not running");
+        }
+        long id = nextId.getAndIncrement();
+        Call call = new Call(id, process);
+        pending.put(id, call);
+        try {
+            send(id, type, body);
+        } catch (IOException e) {
+            pending.remove(id);
+            throw e;
+        }
+        call.reply.whenComplete((r, e) -> pending.remove(id, call));
+        return call;
+    }
+
+    // Encodes a request straight into the reusable frame buffer and writes it in one go
+    private void send(long id, String type, Body body) throws IOException {
+        long start = System.nanoTime();
+        frame.beginFrame().beginObject();
+        frame.name("id").value(id);
+        frame.name("type").value(type);
+        if (body != null) {
+            body.write(frame);
+        }
+        frame.endObject().endFrame();
+        if (body != null) {
+            HintMetrics.record(HintMetrics.Stage.SERIALIZE, "worker", System.nanoTime() - start);
+        }
+        frame.writeTo(toWorker);
+        toWorker.flush();
+    }
+
+    private void readReplies(DataInputStream in) throws IOException {
+        byte[] payload = new byte[256];
+        JsonCodec.Reader reader = new JsonCodec.Reader();
+        while (true) {
+            int length = in.readInt();
+            if (length > payload.length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            in.readFully(payload, 0, length);
+            long start = System.nanoTime();
+            Reply reply = Reply.read(reader.reset(payload, 0, length));
+            lastReplyAt = System.nanoTime();
+            HintMetrics.record(HintMetrics.Stage.PARSE, "worker", System.nanoTime() - start);
+            HintMetrics.recordMillis(HintMetrics.Stage.ENCODE, "worker", reply.encodeMs);
+            HintMetrics.recordMillis(HintMetrics.Stage.SCORE, "worker", reply.scoreMs);
+            Call call = pending.remove(reply.id);
+            if (call != null) {
+                call.reply.complete(reply);
+            }
+        }
+    }
+
+    private static Reply await(CompletableFuture<Reply> reply, long timeoutMs) throws IOException {
+        try {
+            return reply.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            IOException timedOut = new IOException("Hint worker timed out after " + timeoutMs + " ms");
+            reply.completeExceptionally(timedOut);
+            throw timedOut;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted waiting for hint worker");
+            reply.completeExceptionally(interrupted);
+            throw interrupted;
+        }
+    }
+
+    // Fails every request still waiting on a process that has gone away; a replacement's
+    // requests are left alone
+    private synchronized void failPending(Process exited, String reason) {
+        if (process == exited) {
+            exited.destroyForcibly();
+            process = null; // so the next request starts a fresh worker instead of writing into a dead pipe
+        }
+        IOException error = new IOException(reason);
+        for (Call call : pending.values()) {
+            if (call.process == exited) {
+                call.reply.completeExceptionally(error);
+            }
+        }
+    }
+
+    private synchronized boolean stopIfCurrent(Process p) {
+        if (p == null || process != p) {
+            return false;
+        }
+        stop();
+        return true;
+    }
+
+    // Kills the process and fails what was sent to it at once, rather than at its timeout
+    private synchronized void stop() {
+        if (process != null) {
+            Process p = process;
+            p.destroyForcibly();
+            failPending(p, "Hint worker restarted");
+        }
+    }
+
+    private interface IOTask {
+        void run() throws IOException;
+    }
+
+    private static void pump(String name, IOTask task, Runnable onClose) {
+        Thread t = new Thread(() -> {
+            try {
+                task.run();
+            } catch (IOException ignored) {
+                // stream closed with the process
+            } finally {
+                onClose.run();
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+    }
+}
@@ -0,0 +1,550 @@
+//JsonCodec.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Small streaming JSON writer/reader for the game state and hint messages.
+// Both work directly on UTF-8 bytes in reusable buffers: a Writer is reset and
+// refilled for every message, and a Reader can be pointed at a new payload
+// without allocating anything but the strings it returns.
+final class JsonCodec {
+    private JsonCodec() {
+    }
+
+    static final class Writer {
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        private static final int MAX_DEPTH = 64;
+
+        private byte[] buf;
+        private int len;
+        private int frameStart = -1;
+        private int depth;
+        private final boolean[] needsComma = new boolean[MAX_DEPTH];
+        private boolean afterName;
+
+        Writer() {
+            this(512);
+        }
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        Writer reset() {
+            len = 0;
+            depth = 0;
+            frameStart = -1;
+            afterName = false;
+            needsComma[0] = false;
+            return this;
+        }
+
+        // Reserves a 4-byte big-endian length prefix, filled in by endFrame
+        Writer beginFrame() {
+            reset();
+            ensure(4);
+            len = 4;
+            frameStart = 4;
+            return this;
+        }
+
+        Writer endFrame() {
+            int payload = len - frameStart;
+            buf[0] = (byte) (payload >>> 24);
+            buf[1] = (byte) (payload >>> 16);
+            buf[2] = (byte) (payload >>> 8);
+            buf[3] = (byte) payload;
+            return this;
+        }
+
+        Writer beginObject() {
+            beforeValue();
+            put('{');
+            push();
+            return this;
+        }
+
+        Writer endObject() {
+            depth--;
+            put('}');
+            return this;
+        }
+
+        Writer beginArray() {
+            beforeValue();
+            put('[');
+            push();
+            return this;
+        }
+
+        Writer endArray() {
+            depth--;
+            put(']');
+            return this;
+        }
+
+        Writer name(String name) {
+            beforeValue();
+            writeString(name);
+            put(':');
+            afterName = true;
+            return this;
+        }
+
+        Writer value(String value) {
+            if (value == null) return nullValue();
+            beforeValue();
+            writeString(value);
+            return this;
+        }
+
+        Writer value(long value) {
+            beforeValue();
+            if (value == Long.MIN_VALUE) {
+                putAscii(Long.toString(value));
+                return this;
+            }
+            if (value < 0) {
+                put('-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) digits++;
+            ensure(digits);
+            for (int i = len + digits - 1; i >= len; i--) {
+                buf[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            len += digits;
+            return this;
+        }
+
+        Writer value(double value) {
+            beforeValue();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                putAscii("null");
+            } else {
+                putAscii(Double.toString(value));
+            }
+            return this;
+        }
+
+        Writer value(boolean value) {
+            beforeValue();
+            putAscii(value ? "true" : "false");
+            return this;
+        }
+
+        Writer nullValue() {
+            beforeValue();
+            putAscii("null");
+            return this;
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        int length() {
+            return len;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(buf, 0, len);
+        }
+
+        void writeTo(WritableByteChannel channel) throws IOException {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+        }
+
+        // The JSON text, without any frame header
+        @Override
+        public String toString() {
+            int start = frameStart < 0 ? 0 : frameStart;
+            return new String(buf, start, len - start, StandardCharsets.UTF_8);
+        }
+
+        private void push() {
+            if (++depth >= MAX_DEPTH) {
+                throw new IllegalStateException("JSON nested too deeply");
+            }
+            needsComma[depth] = false;
+        }
+
+        private void beforeValue() {
+            if (afterName) {
+                afterName = false;
+                return;
+            }
+            if (needsComma[depth]) {
+                put(',');
+            }
+            needsComma[depth] = true;
+        }
+
+        private void writeString(String s) {
+            ensure(s.length() + 2);
+            buf[len++] = '"';
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    ensure(1);
+                    buf[len++] = (byte) c;
+                } else if (c == '"' || c == '\\') {
+                    put('\\');
+                    put(c);
+                } else if (c == '\n') {
+                    putAscii("\\n");
+                } else if (c == '\r') {
+                    putAscii("\\r");
+                } else if (c == '\t') {
+                    putAscii("\\t");
+                } else if (c < 0x20) {
+                    ensure(6);
+                    buf[len++] = '\\';
+                    buf[len++] = 'u';
+                    buf[len++] = '0';
+                    buf[len++] = '0';
+                    buf[len++] = HEX[c >> 4];
+                    buf[len++] = HEX[c & 0xF];
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    putCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+                } else {
+                    putCodePoint(Character.isSurrogate(c) ? 0xFFFD : c);
+                }
+            }
+            put('"');
+        }
+
+        private void putCodePoint(int cp) {
+            ensure(4);
+            if (cp < 0x800) {
+                buf[len++] = (byte) (0xC0 | (cp >> 6));
+                buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (cp < 0x10000) {
+                buf[len++] = (byte) (0xE0 | (cp >> 12));
+                buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                buf[len++] = (byte) (0xF0 | (cp >> 18));
+                buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            }
+        }
+
+        private void put(char c) {
+            ensure(1);
+            buf[len++] = (byte) c;
+        }
+
+        private void putAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                buf[len++] = (byte) s.charAt(i);
+            }
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+            }
+        }
+    }
+
+    // Pull parser: the caller walks the document with beginObject/nextName/next*
+    // in whatever order the keys arrive, and skipValue()s anything it ignores.
+    static final class Reader {
+        enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END }
+
+        private byte[] buf;
+        private int pos;
+        private int end;
+        private char[] chars = new char[64];
+
+        Reader() {
+        }
+
+        Reader(String json) {
+            reset(json);
+        }
+
+        Reader reset(String json) {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            return reset(bytes, 0, bytes.length);
+        }
+
+        Reader reset(byte[] bytes, int offset, int length) {
+            buf = bytes;
+            pos = offset;
+            end = offset + length;
+            return this;
+        }
+
+        Token peek() throws IOException {
+            skipSeparators();
+            if (pos >= end) return Token.END;
+            switch (buf[pos]) {
+                case '{':
+                    return Token.BEGIN_OBJECT;
+                case '}':
+                    return Token.END_OBJECT;
+                case '[':
+                    return Token.BEGIN_ARRAY;
+                case ']':
+                    return Token.END_ARRAY;
+                case '"':
+                    return Token.STRING;
+                case 't':
+                case 'f':
+                    return Token.BOOLEAN;
+                case 'n':
+                    return Token.NULL;
+                default:
+                    return Token.NUMBER;
+            }
+        }
+
+        void beginObject() throws IOException {
+            expect('{');
+        }
+
+        void endObject() throws IOException {
+            expect('}');
+        }
+
+        void beginArray() throws IOException {
+            expect('[');
+        }
+
+        void endArray() throws IOException {
+            expect(']');
+        }
+
+        // True while the current object or array has more members
+        boolean hasNext() throws IOException {
+            Token t = peek();
+            return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END;
+        }
+
+        String nextName() throws IOException {
+            String name = nextString();
+            skipWhitespace();
+            if (pos >= end || buf[pos] != ':') throw error("Expected ':'");
+            pos++;
+            return name;
+        }
+
+        String nextString() throws IOException {
+            skipSeparators();
+            if (pos >= end || buf[pos] != '"') throw error("Expected string");
+            pos++;
+            int n = 0;
+            while (true) {
+                if (pos >= end) throw error("Unterminated string");
+                int b = buf[pos++] & 0xFF;
+                if (b == '"') break;
+                if (n + 2 > chars.length) chars = Arrays.copyOf(chars, chars.length * 2);
+                if (b == '\\') {
+                    if (pos >= end) throw error("Unterminated escape");
+                    int e = buf[pos++];
+                    switch (e) {
+                        case '"': chars[n++] = '"'; break;
+                        case '\\': chars[n++] = '\\'; break;
+                        case '/': chars[n++] = '/'; break;
+                        case 'b': chars[n++] = '\b'; break;
+                        case 'f': chars[n++] = '\f'; break;
+                        case 'n': chars[n++] = '\n'; break;
+                        case 'r': chars[n++] = '\r'; break;
+                        case 't': chars[n++] = '\t'; break;
+                        case 'u':
+                            if (pos + 4 > end) throw error("Bad unicode escape");
+                            chars[n++] = (char) Integer.parseInt(new String(buf, pos, 4, StandardCharsets.US_ASCII), 16);
+                            pos += 4;
+                            break;
+                        default:
+                            throw error("Bad escape \\" + (char) e);
+                    }
+                } else if (b < 0x80) {
+                    chars[n++] = (char) b;
+                } else {
+                    int cp;
+                    int extra;
+                    if (b >= 0xF0) { cp = b & 0x07; extra = 3; }
+                    else if (b >= 0xE0) { cp = b & 0x0F; extra = 2; }
+                    else { cp = b & 0x1F; extra = 1; }
+                    if (pos + extra > end) throw error("Truncated UTF-8");
+                    for (int i = 0; i < extra; i++) {
+                        cp = (cp << 6) | (buf[pos++] & 0x3F);
+                    }
+                    n += Character.toChars(cp, chars, n);
+                }
+            }
+            return new String(chars, 0, n);
+        }
+
+        long nextLong() throws IOException {
+            skipSeparators();
+            int start = pos;
+            boolean negative = pos < end && buf[pos] == '-';
+            if (negative) pos++;
+            long value = 0;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos++] - '0');
+            }
+            if (pos < end && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E')) {
+                pos = start;
+                return (long) nextDouble();
+            }
+            if (pos == start + (negative ? 1 : 0)) throw error("Expected number");
+            return negative ? -value : value;
+        }
+
+        int nextInt() throws IOException {
+            return (int) nextLong();
+        }
+
+        double nextDouble() throws IOException {
+            skipSeparators();
+            int start = pos;
+            while (pos < end && "+-0123456789.eE".indexOf(buf[pos]) >= 0) pos++;
+            if (pos == start) throw error("Expected number");
+            return Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+        }
+
+        boolean nextBoolean() throws IOException {
+            skipSeparators();
+            if (match("true")) return true;
+            if (match("false")) return false;
+            throw error("Expected boolean");
+        }
+
+        void nextNull() throws IOException {
+            skipSeparators();
+            if (!match("null")) throw error("Expected null");
+        }
+
+        void skipValue() throws IOException {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    while (hasNext()) {
+                        nextName();
+                        skipValue();
+                    }
+                    endObject();
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    while (hasNext()) skipValue();
+                    endArray();
+                    break;
+                case STRING:
+                    nextString();
+                    break;
+                case BOOLEAN:
+                    nextBoolean();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                case NUMBER:
+                    nextDouble();
+                    break;
+                default:
+                    throw error("Unexpected " + peek());
+            }
+        }
+
+        private boolean match(String literal) {
+            if (pos + literal.length() > end) return false;
+            for (int i = 0; i < literal.length(); i++) {
+                if (buf[pos + i] != literal.charAt(i)) return false;
+            }
+            pos += literal.length();
+            return true;
+        }
+
+        private void expect(char c) throws IOException {
+            skipSeparators();
+            if (pos >= end || buf[pos] != c) throw error("Expected '" + c + "'");
+            pos++;
+        }
+
+        // Commas carry no information for a pull parser, so they are skipped like whitespace
+        private void skipSeparators() {
+            while (pos < end) {
+                byte b = buf[pos];
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',') pos++;
+                else break;
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < end) {
+                byte b = buf[pos];
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t') pos++;
+                else break;
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at offset " + pos);
+        }
+    }
+
+    // Hint request state, in the schema codenamesAI.py reads
+    static void writeState(Writer w, CodenamesBoard board, String team, String risk) {
+        w.beginObject();
+        w.name("team").value(team);
+        w.name("risk").value(risk);
+        w.name("red_words");
+        writeWords(w, board, board.teamMask(Team.RED));
+        w.name("blue_words");
+        writeWords(w, board, board.teamMask(Team.BLUE));
+        w.name("neutral_words");
+        writeWords(w, board, board.teamMask(Team.NEUTRAL));
+        w.name("assassin").value(board.getAssassin());
+        w.name("revealed");
+        writeWords(w, board, board.getRevealedMask());
+        w.endObject();
+    }
+
+    private static void writeWords(Writer w, CodenamesBoard board, long mask) {
+        w.beginArray();
+        for (long m = mask; m != 0; m &= m - 1) {
+            w.value(board.wordAt(Long.numberOfTrailingZeros(m)));
+        }
+        w.endArray();
+    }
+
+    // {"clue": ..., "number": ...} in any key order; other keys are ignored
+    static Hint readHint(Reader r) throws IOException {
+        String clue = null;
+        int number = 0;
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "clue":
+                    clue = r.nextString();
+                    break;
+                case "number":
+                    number = r.nextInt();
+                    break;
+                default:
+                    r.skipValue();
+            }
+        }
+        r.endObject();
+        if (clue == null) {
+            throw new IOException("Hint has no clue");
+        }
+        return new Hint(clue, number);
+    }
+}
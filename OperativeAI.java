@@ -0,0 +1,85 @@
+//OperativeAI.java
+
+import java.util.*;
+
+// Automated guesser: given a clue and its number, ranks the unrevealed cards
+// by similarity to the clue and decides how far down that list to go.
+//
+// It only sees what a human operative sees (the words and which are revealed),
+// never the card teams. Similarities come from the board's clue x card matrix
+// when the clue is a candidate clue, otherwise from a dot product over the
+// stored unit vectors. After the first guess it keeps going only while the
+// next card is within the risk profile's threshold of the clue's best match,
+// the same cut-off the spymaster uses to pick the number, so it works for any
+// embedding scale. Only the aggressive profile spends the bonus guess.
+class OperativeAI implements Simulator.Operative {
+    private final EmbeddingStore store;
+    private final RiskProfile risk;
+    private final Map<String, Integer> candidateOf = new HashMap<>();
+
+    OperativeAI(EmbeddingStore store, RiskProfile risk) {
+        this.store = store;
+        this.risk = risk;
+        List<String> clues = store.getClues();
+        for (int i = 0; i < clues.size(); i++) {
+            candidateOf.put(clues.get(i).toLowerCase(), i);
+        }
+    }
+
+    EmbeddingStore getStore() {
+        return store;
+    }
+
+    RiskProfile getRisk() {
+        return risk;
+    }
+
+    public String nextGuess(CodenamesBoard board, String team, Hint hint, int guessesMade, Random rnd) {
+        if (guessesMade > hint.number || (guessesMade == hint.number && risk != RiskProfile.AGGRESSIVE)) {
+            return null;
+        }
+        float[] sims = new float[board.size()];
+        if (!similarities(board, hint.clue, sims)) {
+            return null;
+        }
+        // The best match over every card, revealed ones included, is what the clue was aimed at
+        float reference = Float.NEGATIVE_INFINITY;
+        int best = -1;
+        for (int card = 0; card < sims.length; card++) {
+            reference = Math.max(reference, sims[card]);
+            if (!board.isCardRevealed(card) && (best < 0 || sims[card] > sims[best])) {
+                best = card;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        // The first guess is always taken: passing outright scores nothing
+        if (guessesMade > 0 && (reference <= 0 || sims[best] < risk.threshold * reference)) {
+            return null;
+        }
+        return board.wordAt(best);
+    }
+
+    // Clue similarity of every card on the board; false if the clue has no embedding
+    private boolean similarities(CodenamesBoard board, String clue, float[] out) {
+        SimilarityMatrix matrix = board.getSimilarity();
+        Integer candidate = candidateOf.get(clue.toLowerCase());
+        if (matrix != null && matrix.getStore() == store && candidate != null) {
+            for (int card = 0; card < out.length; card++) {
+                out[card] = (float) matrix.sim(candidate, card);
+            }
+            return true;
+        }
+
+        int row = store.row(clue.toLowerCase());
+        if (row < 0) row = store.row(clue.toUpperCase());
+        if (row < 0) return false;
+        float[] clueVec = store.unitVector(row);
+        for (int card = 0; card < out.length; card++) {
+            int cardRow = store.row(board.wordAt(card));
+            out[card] = cardRow < 0 ? Float.NEGATIVE_INFINITY : SimilarityMatrix.dot(clueVec, store.unitVector(cardRow));
+        }
+        return true;
+    }
+}
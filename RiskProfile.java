@@ -0,0 +1,49 @@
+//RiskProfile.java
+
+// Mirrors the RISK_PROFILES table in codenamesAI.py; RiskTuner builds others to try
+final class RiskProfile {
+    static final double DEFAULT_MULTI_WORD_BONUS = 0.6;
+    static final double DEFAULT_NOUN_BIAS = 0.2;
+
+    static final RiskProfile SAFE = new RiskProfile("SAFE", 0.30, 1.5, 0.85);
+    static final RiskProfile NORMAL = new RiskProfile("NORMAL", 0.40, 1.0, 0.80);
+    static final RiskProfile AGGRESSIVE = new RiskProfile("AGGRESSIVE", 0.55, 0.7, 0.72);
+
+    final String name;
+    final double assassinMax;    // assassin similarity above this vetoes the clue
+    final double penaltyWeight;  // weight of the mean similarity to opponent/neutral cards
+    final double threshold;      // fraction of the best target similarity that still counts
+    final double multiWordBonus; // per target card the clue is strongly similar to
+    final double nounBias;       // added for noun-like clues, subtracted for the rest
+
+    RiskProfile(String name, double assassinMax, double penaltyWeight, double threshold) {
+        this(name, assassinMax, penaltyWeight, threshold, DEFAULT_MULTI_WORD_BONUS, DEFAULT_NOUN_BIAS);
+    }
+
+    RiskProfile(String name, double assassinMax, double penaltyWeight, double threshold,
+                double multiWordBonus, double nounBias) {
+        this.name = name;
+        this.assassinMax = assassinMax;
+        this.penaltyWeight = penaltyWeight;
+        this.threshold = threshold;
+        this.multiWordBonus = multiWordBonus;
+        this.nounBias = nounBias;
+    }
+
+    static RiskProfile forName(String name) {
+        switch (name.toUpperCase()) {
+            case "SAFE":
+                return SAFE;
+            case "AGGRESSIVE":
+                return AGGRESSIVE;
+            default:
+                return NORMAL;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "(assassinMax=" + assassinMax + ", penaltyWeight=" + penaltyWeight + ", threshold=" + threshold
+            + ", multiWordBonus=" + multiWordBonus + ", nounBias=" + nounBias + ")";
+    }
+}
@@ -0,0 +1,331 @@
+//RiskTuner.java
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+// Sweeps the spymaster's risk parameters over simulated games:
+//   java codenamesRunner --tune [--games N] [--seed S] [--threads T] [--baseline RISK]
+//       [--assassinMax a,b,...] [--penaltyWeight ...] [--threshold ...]
+//       [--multiWordBonus ...] [--nounBias ...] [--out FILE] [--checkpoint FILE]
+//
+// Every combination of the listed values plays N seeds against the baseline
+// profile, each seed twice with the colours swapped, so no configuration gets
+// easier boards or more starts than another. The work is split into
+// (configuration, block of seeds) tasks over all cores. Each finished task is
+// appended to the checkpoint file, so a sweep that is stopped picks up where
+// it left off when started again with the same options. Configurations are
+// ranked by win rate against the baseline and written as CSV.
+final class RiskTuner {
+    private static final int SEEDS_PER_TASK = 50;
+    private static final String CHECKPOINT_VERSION = "risk-tuner 1";
+
+    private static final class Config {
+        final String key;
+        final RiskProfile risk;
+
+        Config(double assassinMax, double penaltyWeight, double threshold, double multiWordBonus, double nounBias) {
+            key = assassinMax + "," + penaltyWeight + "," + threshold + "," + multiWordBonus + "," + nounBias;
+            risk = new RiskProfile("TUNE " + key, assassinMax, penaltyWeight, threshold, multiWordBonus, nounBias);
+        }
+    }
+
+    // Games one configuration played against the baseline
+    private static final class Tally {
+        long games;
+        long wins;
+        long assassinLosses; // the configuration's own team found the assassin
+        long unfinished;
+        long turns;
+
+        void add(Tally other) {
+            games += other.games;
+            wins += other.wins;
+            assassinLosses += other.assassinLosses;
+            unfinished += other.unfinished;
+            turns += other.turns;
+        }
+
+        double winRate() {
+            long finished = games - unfinished;
+            return finished == 0 ? 0 : (double) wins / finished;
+        }
+
+        // Half-width of the 95% confidence interval on the win rate
+        double winMargin() {
+            long finished = games - unfinished;
+            double p = winRate();
+            return finished == 0 ? 1 : 1.96 * Math.sqrt(p * (1 - p) / finished);
+        }
+    }
+
+    private final Simulator simulator;
+    private final RiskProfile baseline;
+    private final long seed;
+    private final long seeds;
+
+    RiskTuner(Simulator simulator, RiskProfile baseline, long seed, long seeds) {
+        this.simulator = simulator;
+        this.baseline = baseline;
+        this.seed = seed;
+        this.seeds = seeds;
+    }
+
+    // Seeds [from, to) with the configuration as RED, then again as BLUE
+    Tally play(Config config, long from, long to) throws IOException {
+        Tally tally = new Tally();
+        for (long i = from; i < to; i++) {
+            for (String team : new String[]{"RED", "BLUE"}) {
+                boolean red = team.equals("RED");
+                GameEngine game = simulator.playGame(seed + i, red ? config.risk : baseline, red ? baseline : config.risk);
+                tally.games++;
+                tally.turns += game.getTurns();
+                String winner = game.getWinner();
+                if (winner == null) {
+                    tally.unfinished++;
+                } else if (winner.equals(team)) {
+                    tally.wins++;
+                } else if (game.isAssassinHit()) {
+                    tally.assassinLosses++;
+                }
+            }
+        }
+        return tally;
+    }
+
+    // Runs every task not already in the checkpoint and returns the totals per configuration
+    Map<String, Tally> sweep(List<Config> configs, int threads, Path checkpoint) throws IOException, InterruptedException, ExecutionException {
+        Map<String, Tally> totals = new LinkedHashMap<>();
+        for (Config config : configs) {
+            totals.put(config.key, new Tally());
+        }
+        Set<String> done = readCheckpoint(checkpoint, totals);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Config config : configs) {
+            for (long from = 0; from < seeds; from += SEEDS_PER_TASK) {
+                long start = from;
+                long end = Math.min(seeds, from + SEEDS_PER_TASK);
+                String task = config.key + "\t" + start + "\t" + end;
+                if (done.contains(task)) {
+                    continue;
+                }
+                tasks.add(() -> {
+                    Tally tally = play(config, start, end);
+                    record(checkpoint, task, tally, totals.get(config.key));
+                    return null;
+                });
+            }
+        }
+        long total = (long) configs.size() * ((seeds + SEEDS_PER_TASK - 1) / SEEDS_PER_TASK);
+        System.out.println(configs.size() + " configurations x " + (2 * seeds) + " games: " + (total - tasks.size())
+            + " of " + total + " tasks already in " + checkpoint + ", running " + tasks.size() + " on " + threads + " thread(s)");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            long reported = System.nanoTime();
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).get();
+                if (System.nanoTime() - reported > TimeUnit.SECONDS.toNanos(30)) {
+                    reported = System.nanoTime();
+                    System.out.println("  " + (total - tasks.size() + i + 1) + " / " + total + " tasks");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return totals;
+    }
+
+    private String checkpointHeader() {
+        return "# " + CHECKPOINT_VERSION + " seed=" + seed + " seeds=" + seeds + " baseline=" + baseline;
+    }
+
+    // Completed tasks from an earlier run with the same options; anything else (another sweep's
+    // file, a line cut short by a crash) is left out and will be played again
+    private Set<String> readCheckpoint(Path checkpoint, Map<String, Tally> totals) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!Files.exists(checkpoint)) {
+            Files.write(checkpoint, (checkpointHeader() + "\n").getBytes(StandardCharsets.UTF_8));
+            return done;
+        }
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(checkpointHeader())) {
+            System.err.println("Checkpoint " + checkpoint + " is for a different sweep, starting over");
+            Files.write(checkpoint, (checkpointHeader() + "\n").getBytes(StandardCharsets.UTF_8));
+            return done;
+        }
+        byte[] bytes = Files.readAllBytes(checkpoint);
+        if (bytes.length > 0 && bytes[bytes.length - 1] != '\n') {
+            // End the torn line so the next task's line starts clean
+            Files.write(checkpoint, new byte[]{'\n'}, StandardOpenOption.APPEND);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            int tab = line.lastIndexOf('\t');
+            String[] f = line.split("\t");
+            if (f.length != 9 || !totals.containsKey(f[0]) || !f[8].equals(checksum(line.substring(0, tab)))) {
+                continue;
+            }
+            try {
+                Tally tally = new Tally();
+                tally.games = Long.parseLong(f[3]);
+                tally.wins = Long.parseLong(f[4]);
+                tally.assassinLosses = Long.parseLong(f[5]);
+                tally.unfinished = Long.parseLong(f[6]);
+                tally.turns = Long.parseLong(f[7]);
+                if (done.add(f[0] + "\t" + Long.parseLong(f[1]) + "\t" + Long.parseLong(f[2]))) {
+                    totals.get(f[0]).add(tally);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return done;
+    }
+
+    // One line per finished task, with a crc of its fields, written whole and forced to disk before the task counts as done
+    private synchronized void record(Path checkpoint, String task, Tally tally, Tally total) throws IOException {
+        String fields = task + "\t" + tally.games + "\t" + tally.wins + "\t" + tally.assassinLosses
+            + "\t" + tally.unfinished + "\t" + tally.turns;
+        String line = fields + "\t" + checksum(fields) + "\n";
+        try (FileOutputStream out = new FileOutputStream(checkpoint.toFile(), true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        total.add(tally);
+    }
+
+    static void main(String[] args) throws Exception {
+        long seeds = 1000;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String baselineName = "NORMAL";
+        double[] assassinMax = {0.30, 0.40, 0.55};
+        double[] penaltyWeight = {0.7, 1.0, 1.5};
+        double[] threshold = {0.72, 0.80, 0.85};
+        double[] multiWordBonus = {0.3, RiskProfile.DEFAULT_MULTI_WORD_BONUS, 0.9};
+        double[] nounBias = {0.0, RiskProfile.DEFAULT_NOUN_BIAS};
+        String out = "risk-tuning.csv";
+        String checkpointFile = "risk-tuning.checkpoint";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games":
+                    seeds = Long.parseLong(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--baseline":
+                    baselineName = args[++i];
+                    break;
+                case "--assassinMax":
+                    assassinMax = values(args[++i]);
+                    break;
+                case "--penaltyWeight":
+                    penaltyWeight = values(args[++i]);
+                    break;
+                case "--threshold":
+                    threshold = values(args[++i]);
+                    break;
+                case "--multiWordBonus":
+                    multiWordBonus = values(args[++i]);
+                    break;
+                case "--nounBias":
+                    nounBias = values(args[++i]);
+                    break;
+                case "--out":
+                    out = args[++i];
+                    break;
+                case "--checkpoint":
+                    checkpointFile = args[++i];
+                    break;
+                default:
+                    System.err.println("Unknown tuning option: " + args[i]);
+                    return;
+            }
+        }
+
+        List<Config> configs = new ArrayList<>();
+        for (double a : assassinMax) {
+            for (double p : penaltyWeight) {
+                for (double t : threshold) {
+                    for (double m : multiWordBonus) {
+                        for (double n : nounBias) {
+                            configs.add(new Config(a, p, t, m, n));
+                        }
+                    }
+                }
+            }
+        }
+
+        EmbeddingStore store = codenamesRunner.loadEmbeddings();
+        RiskProfile baseline = RiskProfile.forName(baselineName);
+        Simulator simulator = new Simulator(new HintEngine(store), new Simulator.NearestCardOperative(store), baseline);
+        RiskTuner tuner = new RiskTuner(simulator, baseline, seed, seeds);
+        long start = System.nanoTime();
+        Map<String, Tally> totals = tuner.sweep(configs, threads, Paths.get(checkpointFile));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        configs.sort((a, b) -> {
+            Tally x = totals.get(a.key);
+            Tally y = totals.get(b.key);
+            int byWins = Double.compare(y.winRate(), x.winRate());
+            return byWins != 0 ? byWins : Long.compare(x.assassinLosses, y.assassinLosses);
+        });
+        writeResults(Paths.get(out), configs, totals);
+
+        System.out.printf("Swept in %.1f s; ranked by win rate against %s, written to %s%n", seconds, baseline.name, out);
+        System.out.println("rank  assassinMax  penaltyWeight  threshold  multiWordBonus  nounBias  win rate         assassin  turns");
+        for (int i = 0; i < Math.min(10, configs.size()); i++) {
+            RiskProfile r = configs.get(i).risk;
+            Tally t = totals.get(configs.get(i).key);
+            System.out.printf("%4d  %11.2f  %13.2f  %9.2f  %14.2f  %8.2f  %6.2f%% +-%5.2f  %7.2f%%  %5.2f%n", i + 1,
+                r.assassinMax, r.penaltyWeight, r.threshold, r.multiWordBonus, r.nounBias,
+                100 * t.winRate(), 100 * t.winMargin(), 100.0 * t.assassinLosses / Math.max(1, t.games),
+                (double) t.turns / Math.max(1, t.games));
+        }
+    }
+
+    private static void writeResults(Path path, List<Config> ranked, Map<String, Tally> totals) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            out.println("rank,assassin_max,penalty_weight,threshold,multi_word_bonus,noun_bias,games,win_rate,win_rate_ci95,assassin_loss_rate,avg_turns,unfinished");
+            for (int i = 0; i < ranked.size(); i++) {
+                RiskProfile r = ranked.get(i).risk;
+                Tally t = totals.get(ranked.get(i).key);
+                out.printf(Locale.ROOT, "%d,%s,%s,%s,%s,%s,%d,%.4f,%.4f,%.4f,%.2f,%d%n", i + 1,
+                    r.assassinMax, r.penaltyWeight, r.threshold, r.multiWordBonus, r.nounBias, t.games,
+                    t.winRate(), t.winMargin(), (double) t.assassinLosses / Math.max(1, t.games),
+                    (double) t.turns / Math.max(1, t.games), t.unfinished);
+            }
+        }
+    }
+
+    // Guards each checkpoint line against a write cut short mid-number
+    private static String checksum(String fields) {
+        CRC32 crc = new CRC32();
+        crc.update(fields.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static double[] values(String list) {
+        String[] parts = list.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+}
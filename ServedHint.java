@@ -0,0 +1,14 @@
+//ServedHint.java
+
+// A clue and what actually produced it, so its metrics are labelled by the real
+// backend: "engine" (a scoring pass), "cache" (a HintCache hit), "search"
+// (ClueSearch rollouts), "worker" (the Python process) or "fallback"
+final class ServedHint {
+    final Hint hint;
+    final String source;
+
+    ServedHint(Hint hint, String source) {
+        this.hint = hint;
+        this.source = source;
+    }
+}
@@ -0,0 +1,212 @@
+//SimilarityMatrix.java
+
+import java.util.*;
+
+// Candidate clue x board card cosine similarities for one board, built once in
+// CodenamesBoard.generateBoard. Revealing a card only masks its column and
+// subtracts it from the running per-team sums, so scoring a clue afterwards is
+// O(1) per candidate instead of a pass over every card vector.
+class SimilarityMatrix {
+    static final double STRONG_SIM = 0.5; // multi-word bonus cut-off in codenamesAI.py
+    static final int MAX_CANDIDATES = 4096; // beyond this a per-board matrix costs more than it saves; see ClueIndex
+
+    private final EmbeddingStore store;
+    private final int candidates;
+    private final int cards;
+    private final float[] sims;        // candidates * cards, one row per candidate (shared by copies)
+    private final byte[] cardTeam;
+    private final int[] boardCardOf;   // card whose word equals the candidate clue, or -1
+    private final int assassinCard;
+    private final boolean[] revealed;
+    private final double[][] teamSum;  // per team, per candidate: sum of sims to unrevealed cards
+    private final int[][] strongCount; // per team, per candidate: unrevealed cards above STRONG_SIM
+    private final int[] unrevealed;
+
+    static boolean fits(EmbeddingStore store) {
+        return store.getClues().size() <= MAX_CANDIDATES;
+    }
+
+    SimilarityMatrix(EmbeddingStore store, CodenamesBoard board) {
+        this.store = store;
+        List<String> clues = store.getClues();
+        candidates = clues.size();
+        cards = board.size();
+        sims = new float[candidates * cards];
+        cardTeam = new byte[cards];
+        revealed = new boolean[cards];
+        boardCardOf = new int[candidates];
+        teamSum = new double[3][candidates];
+        strongCount = new int[3][candidates];
+        unrevealed = new int[Team.COUNT];
+        assassinCard = board.getAssassinCard();
+
+        boolean quantized = store.isQuantized();
+        float[][] cardVecs = new float[cards][];
+        byte[][] cardQuantized = new byte[cards][];
+        float[] cardScale = new float[cards];
+        Map<String, Integer> cardIndex = new HashMap<>();
+        for (int c = 0; c < cards; c++) {
+            String word = board.wordAt(c).toUpperCase();
+            int row = store.row(word);
+            if (row < 0) {
+                throw new IllegalStateException("No embedding for board word " + word);
+            }
+            if (quantized) {
+                cardQuantized[c] = new byte[store.dim()];
+                store.readQuantized(row, cardQuantized[c]);
+                cardScale[c] = store.scale(row);
+            } else {
+                cardVecs[c] = store.unitVector(row);
+            }
+            cardTeam[c] = board.teamAt(c);
+            unrevealed[cardTeam[c]]++;
+            cardIndex.put(word, c);
+        }
+
+        // Quantized clue rows are read straight into one buffer, never expanded to floats
+        byte[] clueQuantized = quantized ? new byte[store.dim()] : null;
+        for (int i = 0; i < candidates; i++) {
+            String clue = clues.get(i);
+            int clueRow = store.row(clue);
+            float[] vec = null;
+            float clueScale = 0;
+            if (quantized) {
+                store.readQuantized(clueRow, clueQuantized);
+                clueScale = store.scale(clueRow);
+            } else {
+                vec = store.unitVector(clueRow);
+            }
+            boardCardOf[i] = cardIndex.getOrDefault(clue.toUpperCase(), -1);
+            int base = i * cards;
+            for (int c = 0; c < cards; c++) {
+                float sim = quantized
+                    ? dot(clueQuantized, cardQuantized[c]) * clueScale * cardScale[c]
+                    : dot(vec, cardVecs[c]);
+                sims[base + c] = sim;
+                int team = cardTeam[c];
+                if (team != Team.ASSASSIN) {
+                    teamSum[team][i] += sim;
+                    if (sim > STRONG_SIM) strongCount[team][i]++;
+                }
+            }
+        }
+    }
+
+    private SimilarityMatrix(SimilarityMatrix other) {
+        store = other.store;
+        candidates = other.candidates;
+        cards = other.cards;
+        sims = other.sims;
+        cardTeam = other.cardTeam;
+        boardCardOf = other.boardCardOf;
+        assassinCard = other.assassinCard;
+        revealed = other.revealed.clone();
+        teamSum = new double[other.teamSum.length][];
+        strongCount = new int[other.strongCount.length][];
+        for (int t = 0; t < teamSum.length; t++) {
+            teamSum[t] = other.teamSum[t].clone();
+            strongCount[t] = other.strongCount[t].clone();
+        }
+        unrevealed = other.unrevealed.clone();
+    }
+
+    // Independent revealed state and sums over the same similarity rows
+    SimilarityMatrix copy() {
+        return new SimilarityMatrix(this);
+    }
+
+    EmbeddingStore getStore() {
+        return store;
+    }
+
+    int candidateCount() {
+        return candidates;
+    }
+
+    void reveal(int card) {
+        if (revealed[card]) return;
+        revealed[card] = true;
+        int team = cardTeam[card];
+        unrevealed[team]--;
+        if (team == Team.ASSASSIN) return;
+        for (int i = 0, idx = card; i < candidates; i++, idx += cards) {
+            float sim = sims[idx];
+            teamSum[team][i] -= sim;
+            if (sim > STRONG_SIM) strongCount[team][i]--;
+        }
+    }
+
+    // Candidates that spell an unrevealed board word are not allowed as clues
+    boolean isEligible(int candidate) {
+        int card = boardCardOf[candidate];
+        return card < 0 || revealed[card];
+    }
+
+    double sim(int candidate, int card) {
+        return sims[candidate * cards + card];
+    }
+
+    double teamSum(int team, int candidate) {
+        return teamSum[team][candidate];
+    }
+
+    int strongCount(int team, int candidate) {
+        return strongCount[team][candidate];
+    }
+
+    int unrevealedCount(int team) {
+        return unrevealed[team];
+    }
+
+    boolean isAssassinLive() {
+        return assassinCard >= 0 && !revealed[assassinCard];
+    }
+
+    double assassinSim(int candidate) {
+        return sims[candidate * cards + assassinCard];
+    }
+
+    int cardCount() {
+        return cards;
+    }
+
+    int cardTeam(int card) {
+        return cardTeam[card];
+    }
+
+    boolean isRevealed(int card) {
+        return revealed[card];
+    }
+
+    // Four independent accumulators so the loop is not bound by add latency
+    static float dot(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int n = a.length & ~3; i < n; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // The same over int8 rows; exact, since 384 products of at most 127 * 127 fit an int many times over
+    static int dot(byte[] a, byte[] b) {
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int n = a.length & ~3; i < n; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
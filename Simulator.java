@@ -0,0 +1,275 @@
+//Simulator.java
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Headless AI-vs-AI games for regression and tuning runs:
+//   java codenamesRunner --simulate [--games N] [--seed S] [--threads T] [--risk R]
+//                                   [--operative nearest|ai] [--search MS] [--cache FILE]
+//                                   [--journal FILE]
+// Game i is seeded with seed + i, so a run is reproducible regardless of thread count.
+// With --journal every game is also recorded (on one thread) for --replay. --search MS
+// gives the spymaster a lookahead clue search with that per-clue time budget.
+// --cache memoizes clue rankings in FILE, so a rerun of the same seeds is mostly lookups.
+class Simulator {
+    private static final int MAX_TURNS = 100; // guards against spymaster/operative pairs that never finish
+    private static final int GAMES_PER_TASK = 256;
+
+    // Picks the next card to guess for a clue, or null to stop guessing
+    interface Operative {
+        String nextGuess(CodenamesBoard board, String team, Hint hint, int guessesMade, Random rnd);
+    }
+
+    // Guesses the unrevealed cards closest to the clue, one per clued card
+    static class NearestCardOperative implements Operative {
+        private final EmbeddingStore store;
+
+        NearestCardOperative(EmbeddingStore store) {
+            this.store = store;
+        }
+
+        public String nextGuess(CodenamesBoard board, String team, Hint hint, int guessesMade, Random rnd) {
+            int clueRow = store.row(hint.clue.toLowerCase());
+            if (clueRow < 0 || guessesMade >= hint.number) {
+                return null;
+            }
+            float[] clueVec = store.unitVector(clueRow);
+            String best = null;
+            double bestSim = Double.NEGATIVE_INFINITY;
+            for (String word : board.getUnrevealedWords()) {
+                double sim = SimilarityMatrix.dot(clueVec, store.unitVector(store.row(word)));
+                if (sim > bestSim) {
+                    bestSim = sim;
+                    best = word;
+                }
+            }
+            return best;
+        }
+    }
+
+    static class Stats {
+        long games;
+        long startingTeamWins;
+        long redWins;
+        long blueWins;
+        long assassinLosses;
+        long unfinished;
+        long turns;
+
+        void add(GameEngine game) {
+            games++;
+            turns += game.getTurns();
+            String winner = game.getWinner();
+            if (winner == null) {
+                unfinished++;
+                return;
+            }
+            if (winner.equals(game.getStartingTeam())) startingTeamWins++;
+            if (winner.equals("RED")) redWins++; else blueWins++;
+            if (game.isAssassinHit()) assassinLosses++;
+        }
+
+        void merge(Stats other) {
+            games += other.games;
+            startingTeamWins += other.startingTeamWins;
+            redWins += other.redWins;
+            blueWins += other.blueWins;
+            assassinLosses += other.assassinLosses;
+            unfinished += other.unfinished;
+            turns += other.turns;
+        }
+    }
+
+    private final HintEngine spymaster;
+    private final Operative operative;
+    private final RiskProfile risk;
+    private GameJournal journal; // games must then be played one at a time
+    private ClueSearch search;
+    private HintCache cache;
+
+    Simulator(HintEngine spymaster, Operative operative, RiskProfile risk) {
+        this.spymaster = spymaster;
+        this.operative = operative;
+        this.risk = risk;
+    }
+
+    void record(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    void search(ClueSearch search) {
+        this.search = search;
+    }
+
+    void cache(HintCache cache) {
+        this.cache = cache;
+    }
+
+    GameEngine playGame(long seed) throws IOException {
+        return playGame(seed, risk, risk);
+    }
+
+    // Each side's spymaster clues with its own risk profile
+    GameEngine playGame(long seed, RiskProfile redRisk, RiskProfile blueRisk) throws IOException {
+        Random rnd = new Random(seed);
+        GameEngine game = new GameEngine(new CodenamesBoard(spymaster.getStore()));
+        String startingTeam = rnd.nextBoolean() ? "RED" : "BLUE";
+        long dealSeed = rnd.nextLong(); // dealt from its own seed so a journal can redeal it
+        game.newGame(startingTeam, new Random(dealSeed));
+        if (journal != null) journal.newGame(game, dealSeed);
+
+        while (game.isActive() && game.getTurns() <= MAX_TURNS) {
+            String team = game.getCurrentTeam();
+            RiskProfile risk = team.equals("RED") ? redRisk : blueRisk;
+            Hint hint;
+            if (search != null) {
+                hint = search.suggest(game.getBoard(), team, risk, rnd);
+            } else if (cache != null) {
+                hint = cache.suggest(game.getBoard(), team, risk, rnd);
+            } else {
+                hint = spymaster.suggest(game.getBoard(), team, risk, rnd);
+            }
+            game.applyHint(hint);
+            if (journal != null) journal.hint(hint);
+
+            int guessesMade = 0;
+            while (true) {
+                String word = operative.nextGuess(game.getBoard(), team, hint, guessesMade, rnd);
+                if (word == null) {
+                    endTurn(game);
+                    break;
+                }
+                GameEngine.Outcome outcome = game.guess(word);
+                if (journal != null) journal.reveal(game.getBoard().indexOf(word), outcome);
+                guessesMade++;
+                if (outcome.endsGame) {
+                    break;
+                }
+                if (outcome.endsTurn || outcome == GameEngine.Outcome.IGNORED) {
+                    endTurn(game);
+                    break;
+                }
+            }
+        }
+        return game;
+    }
+
+    private void endTurn(GameEngine game) throws IOException {
+        game.endTurn();
+        if (journal != null) journal.endTurn();
+    }
+
+    Stats run(long games, long seed, int threads) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Stats>> futures = new ArrayList<>();
+            for (long start = 0; start < games; start += GAMES_PER_TASK) {
+                long from = start;
+                long to = Math.min(games, start + GAMES_PER_TASK);
+                futures.add(pool.submit(() -> {
+                    Stats stats = new Stats();
+                    for (long i = from; i < to; i++) {
+                        stats.add(playGame(seed + i));
+                    }
+                    return stats;
+                }));
+            }
+            Stats total = new Stats();
+            for (Future<Stats> future : futures) {
+                total.merge(future.get());
+            }
+            return total;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static void main(String[] args) throws Exception {
+        long games = 10_000;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String risk = "NORMAL";
+        String journalFile = null;
+        String operativeName = "nearest";
+        long searchMs = 0;
+        String cacheFile = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games":
+                    games = Long.parseLong(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--risk":
+                    risk = args[++i];
+                    break;
+                case "--operative":
+                    operativeName = args[++i];
+                    break;
+                case "--search":
+                    searchMs = Long.parseLong(args[++i]);
+                    break;
+                case "--cache":
+                    cacheFile = args[++i];
+                    break;
+                case "--journal":
+                    journalFile = args[++i];
+                    break;
+                default:
+                    System.err.println("Unknown simulation option: " + args[i]);
+                    return;
+            }
+        }
+
+        EmbeddingStore store = codenamesRunner.loadEmbeddings();
+        Operative operative = operativeName.equals("ai")
+            ? new OperativeAI(store, RiskProfile.forName(risk))
+            : new NearestCardOperative(store);
+        HintEngine spymaster = new HintEngine(store);
+        Simulator simulator = new Simulator(spymaster, operative, RiskProfile.forName(risk));
+        if (searchMs > 0) {
+            simulator.search(new ClueSearch(spymaster, ClueSearch.DEFAULT_CANDIDATES, ClueSearch.DEFAULT_ROLLOUTS, searchMs));
+        }
+        HintCache cache = null;
+        if (cacheFile != null) {
+            cache = new HintCache(spymaster, HintCache.DEFAULT_CAPACITY, Paths.get(cacheFile), HintCache.DEFAULT_DISK_BYTES);
+            simulator.cache(cache);
+        }
+        GameJournal journal = null;
+        if (journalFile != null) {
+            journal = new GameJournal(Paths.get(journalFile), true);
+            simulator.record(journal);
+            threads = 1;
+        }
+
+        System.out.println("Simulating " + games + " games on " + threads + " thread(s), seed " + seed + ", risk " + risk
+            + ", operative " + operativeName + (searchMs > 0 ? ", search " + searchMs + " ms" : ""));
+        long start = System.nanoTime();
+        Stats stats = simulator.run(games, seed, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (journal != null) {
+            journal.close();
+        }
+        if (cache != null) {
+            System.out.println("Hint cache:          " + cache.getHits() + " memory hits, " + cache.getDiskHits() + " disk hits, "
+                + cache.getMisses() + " misses");
+            cache.close();
+        }
+
+        double finished = Math.max(1, stats.games - stats.unfinished);
+        System.out.printf("Games:               %d in %.2f s (%.0f games/sec)%n", stats.games, seconds, stats.games / seconds);
+        System.out.printf("Starting team wins:  %.2f%%%n", 100.0 * stats.startingTeamWins / finished);
+        System.out.printf("RED / BLUE wins:     %.2f%% / %.2f%%%n", 100.0 * stats.redWins / finished, 100.0 * stats.blueWins / finished);
+        System.out.printf("Assassin losses:     %.2f%%%n", 100.0 * stats.assassinLosses / finished);
+        System.out.printf("Average turns:       %.2f%n", (double) stats.turns / stats.games);
+        if (stats.unfinished > 0) {
+            System.out.println("Unfinished (hit " + MAX_TURNS + " turns): " + stats.unfinished);
+        }
+    }
+}
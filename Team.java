@@ -0,0 +1,37 @@
+//Team.java
+
+// Card owners as bytes, so boards can keep per-team bitmasks indexed by these values
+final class Team {
+    static final byte RED = 0;
+    static final byte BLUE = 1;
+    static final byte NEUTRAL = 2;
+    static final byte ASSASSIN = 3;
+    static final int COUNT = 4;
+
+    private static final String[] NAMES = {"RED", "BLUE", "NEUTRAL", "ASSASSIN"};
+
+    private Team() {
+    }
+
+    static String name(byte team) {
+        return NAMES[team];
+    }
+
+    // Unknown names map to NEUTRAL, matching CodenamesBoard.getCardTeam's default
+    static byte of(String name) {
+        switch (name) {
+            case "RED":
+                return RED;
+            case "BLUE":
+                return BLUE;
+            case "ASSASSIN":
+                return ASSASSIN;
+            default:
+                return NEUTRAL;
+        }
+    }
+
+    static byte other(byte team) {
+        return team == RED ? BLUE : RED;
+    }
+}
@@ -0,0 +1,183 @@
+//WordPack.java
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// The words boards are dealt from: the built-in list, or external packs
+// (words.txt, or -Dcodenames.words=a.txt:b.txt for several). A pack is one
+// word per line, UTF-8; blank lines and lines starting with # are skipped.
+//
+// Packs are memory-mapped and scanned once into a single array of unique,
+// upper-cased words. Dealing a board samples 25 indexes without replacement
+// (Floyd's algorithm), so it costs the same for 40 words or 100,000.
+final class WordPack {
+    private static volatile WordPack defaultPack;
+
+    private final String[] words;
+    private final Map<String, Integer> index;
+
+    private WordPack(String[] words, Map<String, Integer> index) {
+        this.words = words;
+        this.index = index;
+    }
+
+    static WordPack of(Collection<String> list) {
+        Builder builder = new Builder();
+        for (String word : list) {
+            builder.add(word);
+        }
+        return builder.build();
+    }
+
+    static WordPack load(List<Path> files) throws IOException {
+        Builder builder = new Builder();
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException(file + " is too large for a word pack");
+                }
+                builder.addLines(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+        return builder.build();
+    }
+
+    // Loaded once: the packs named by -Dcodenames.words, else words.txt if present, else the built-in list
+    static WordPack getDefault() {
+        WordPack pack = defaultPack;
+        if (pack == null) {
+            synchronized (WordPack.class) {
+                pack = defaultPack;
+                if (pack == null) {
+                    pack = loadDefault();
+                    defaultPack = pack;
+                }
+            }
+        }
+        return pack;
+    }
+
+    private static WordPack loadDefault() {
+        List<Path> files = new ArrayList<>();
+        String property = System.getProperty("codenames.words");
+        if (property != null) {
+            for (String name : property.split(File.pathSeparator)) {
+                if (!name.isEmpty()) files.add(Paths.get(name));
+            }
+        } else if (Files.exists(Paths.get(codenamesRunner.WORDS_FILE))) {
+            files.add(Paths.get(codenamesRunner.WORDS_FILE));
+        }
+        if (!files.isEmpty()) {
+            try {
+                WordPack pack = load(files);
+                if (pack.size() >= CodenamesBoard.SIZE) {
+                    System.out.println("Loaded " + pack.size() + " words from " + files);
+                    return pack;
+                }
+                System.err.println("Word pack " + files + " has fewer than " + CodenamesBoard.SIZE + " words, using the built-in list");
+            } catch (IOException e) {
+                System.err.println("Could not load word pack " + files + ": " + e.getMessage());
+            }
+        }
+        return of(CodenamesBoard.BUILT_IN_WORDS);
+    }
+
+    int size() {
+        return words.length;
+    }
+
+    String word(int i) {
+        return words[i];
+    }
+
+    int indexOf(String word) {
+        Integer i = index.get(word);
+        return i == null ? -1 : i;
+    }
+
+    List<String> words() {
+        return Collections.unmodifiableList(Arrays.asList(words));
+    }
+
+    // Fills out with out.length distinct words in random order: Floyd's algorithm picks
+    // the indexes, then a Fisher-Yates pass over just those mixes their order
+    void sample(String[] out, Random rnd) {
+        int k = out.length;
+        int n = words.length;
+        if (k > n) {
+            throw new IllegalArgumentException("Cannot deal " + k + " words from a pack of " + n);
+        }
+        int[] picked = new int[k];
+        int count = 0;
+        for (int j = n - k; j < n; j++) {
+            int t = rnd.nextInt(j + 1);
+            picked[count] = contains(picked, count, t) ? j : t;
+            count++;
+        }
+        for (int i = k - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int tmp = picked[i];
+            picked[i] = picked[j];
+            picked[j] = tmp;
+        }
+        for (int i = 0; i < k; i++) {
+            out[i] = words[picked[i]];
+        }
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private static final class Builder {
+        private final List<String> words = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private byte[] line = new byte[64];
+
+        void add(String raw) {
+            String word = raw.replace("\uFEFF", "").trim();
+            if (word.isEmpty() || word.startsWith("#")) {
+                return;
+            }
+            word = word.toUpperCase(Locale.ROOT);
+            if (!index.containsKey(word)) {
+                index.put(word, words.size());
+                words.add(word);
+            }
+        }
+
+        // Splits the mapped file on newlines; only each line's bytes are copied, never the whole file
+        void addLines(MappedByteBuffer buf) {
+            int start = 0;
+            int limit = buf.limit();
+            for (int i = 0; i <= limit; i++) {
+                if (i == limit || buf.get(i) == '\n') {
+                    int length = i - start;
+                    if (length > 0) {
+                        if (length > line.length) {
+                            line = new byte[Math.max(length, line.length * 2)];
+                        }
+                        buf.get(start, line, 0, length);
+                        add(new String(line, 0, length, StandardCharsets.UTF_8));
+                    }
+                    start = i + 1;
+                }
+            }
+        }
+
+        WordPack build() {
+            return new WordPack(words.toArray(new String[0]), index);
+        }
+    }
+}
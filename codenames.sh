@@ -0,0 +1,19 @@
+#!/bin/sh
+# Starts the game with an application class-data sharing (AppCDS) archive.
+# The first launch records every class it loaded into codenames.jsa when it
+# exits; later launches map that archive instead of parsing and verifying the
+# classes again. The archive is rebuilt after the sources are recompiled.
+# Extra JVM options go in JAVA_OPTS; arguments are passed to codenamesRunner.
+cd "$(dirname "$0")" || exit 1
+ARCHIVE=codenames.jsa
+
+if [ ! -f codenamesRunner.class ] || [ -n "$(find . -maxdepth 1 -name '*.java' -newer codenamesRunner.class)" ]; then
+    javac -encoding UTF-8 *.java || exit 1
+fi
+if [ -f "$ARCHIVE" ] && [ -z "$(find . -maxdepth 1 -name '*.class' -newer "$ARCHIVE")" ]; then
+    CDS="-XX:SharedArchiveFile=$ARCHIVE"
+else
+    rm -f "$ARCHIVE"
+    CDS="-XX:ArchiveClassesAtExit=$ARCHIVE -Xlog:cds=off"
+fi
+exec java $CDS $JAVA_OPTS -cp . codenamesRunner "$@"
@@ -1,62 +1,88 @@
 import json
+import sys
 import numpy as np
 from sentence_transformers import SentenceTransformer
 import random
 import math
+import os
+import struct
+import time
 
 np.random.seed(None)
 random.seed(None)
 
+EMBEDDINGS_FILE = "embeddings.bin"
+
 # -----------------------------
 # 1. Load model
 # -----------------------------
-model = SentenceTransformer("all-MiniLM-L6-v2")
+model = None
+
+def load_model():
+    global model
+    if model is None:
+        model = SentenceTransformer("all-MiniLM-L6-v2")
+    return model
 
 # -----------------------------
-# 2. Load game state
+# 1b. Precomputed embedding store
 # -----------------------------
-with open("state.json", "r") as f:
-    board = json.load(f)
+# Same layout EmbeddingStore.java reads (little-endian):
+#   header  b"CNEM", int version, int dim, int rows, int data_offset
+#   index   per row: kind byte (W board word, C candidate clue), uint16 length, UTF-8 word
+#   data    rows x dim float32 at data_offset (64-byte aligned)
+# Version 2 (java EmbeddingStore --quantize) holds unit vectors as rows x dim int8
+# at data_offset, then one float32 scale per row at the next 64-byte boundary.
+STORE_MAGIC = b"CNEM"
+STORE_VERSION = 1
+STORE_QUANTIZED_VERSION = 2
+STORE_HEADER = struct.Struct("<4siiii")
 
-current_team = board.get("team", "RED")
-risk_mode = board.get("risk", "NORMAL").upper()
+store_rows = {}
+store_vecs = None
+store_clues = []  # the store's C rows, in order: the clues the Java engine ranks
 
-red_words = [w.upper() for w in board.get("red_words", [])]
-blue_words = [w.upper() for w in board.get("blue_words", [])]
-neutral_words = [w.upper() for w in board.get("neutral_words", [])]
-assassin = board.get("assassin", "").upper()
-revealed_words = set(w.upper() for w in board.get("revealed", []))
+def load_store(path=EMBEDDINGS_FILE):
+    global store_rows, store_vecs, store_clues
+    if store_vecs is not None or not os.path.exists(path):
+        return store_vecs is not None
 
-red_words = [w for w in red_words if w not in revealed_words]
-blue_words = [w for w in blue_words if w not in revealed_words]
-neutral_words = [w for w in neutral_words if w not in revealed_words]
-assassin_unrevealed = assassin not in revealed_words
+    with open(path, "rb") as f:
+        magic, version, dim, rows, data_offset = STORE_HEADER.unpack(f.read(STORE_HEADER.size))
+        if magic != STORE_MAGIC or version not in (STORE_VERSION, STORE_QUANTIZED_VERSION):
+            raise ValueError(f"{path} is not a version {STORE_VERSION} or {STORE_QUANTIZED_VERSION} embedding store")
+        index = {}
+        clues = []
+        for row in range(rows):
+            kind, length = struct.unpack("<cH", f.read(3))
+            word = f.read(length).decode("utf-8")
+            index.setdefault(word, row)
+            if kind == b"C":
+                clues.append(word)
 
-# -----------------------------
-# 3. Team logic (FIXED)
-# -----------------------------
-if current_team == "BLUE":
-    target_words = blue_words
-    penalty_words = red_words
-else:
-    target_words = red_words
-    penalty_words = blue_words
+    if version == STORE_QUANTIZED_VERSION:
+        scale_offset = (data_offset + rows * dim + 63) & ~63
+        quantized = np.memmap(path, dtype="i1", mode="r", offset=data_offset, shape=(rows, dim))
+        scales = np.memmap(path, dtype="<f4", mode="r", offset=scale_offset, shape=(rows,))
+        store_vecs = quantized.astype("<f4") * scales[:, None]
+    else:
+        store_vecs = np.memmap(path, dtype="<f4", mode="r", offset=data_offset, shape=(rows, dim))
+    store_rows = index
+    store_clues = clues
+    return True
 
-if not target_words:
-    with open("hint.json", "w") as f:
-        json.dump({"clue": "GAME_OVER", "number": 0}, f)
-    exit()
+# Model output for words missing from the store, kept for the life of the worker
+encoded = {}
 
-# -----------------------------
-# 4. Encode vectors
-# -----------------------------
-target_vecs = model.encode(target_words)
-penalty_vecs = model.encode(penalty_words) if penalty_words else []
-neutral_vecs = model.encode(neutral_words) if neutral_words else []
-assassin_vec = model.encode([assassin])[0] if assassin_unrevealed else None
+def encode(words):
+    # Stored rows are free; only words never seen before go through the model, in one call
+    missing = list(dict.fromkeys(w for w in words if w not in store_rows and w not in encoded))
+    if missing:
+        encoded.update(zip(missing, load_model().encode(missing)))
+    return np.array([store_vecs[store_rows[w]] if w in store_rows else encoded[w] for w in words])
 
 # -----------------------------
-# 5. Candidate clues
+# 2. Candidate clues
 # -----------------------------
 candidate_clues = [
     "space","planet","star","moon","animal","mammal","bird","fish","fruit","food",
@@ -67,94 +93,320 @@ candidate_clues = [
     "object","material","metal","wood","stone","glass"
 ]
 
-# Remove board words
-all_board_words = set(red_words + blue_words + neutral_words + ([assassin] if assassin_unrevealed else []))
-candidate_clues = [c for c in candidate_clues if c.upper() not in all_board_words]
+# A store exported with --vocab holds far more clues than the list above; with
+# a store loaded, its clue rows are the candidates, the same ones the Java
+# engine ranks, so both hint paths choose from one vocabulary
+def clue_candidates():
+    return store_clues or candidate_clues
+
+# Unit vectors, noun-bias signs and board-word lookup for the candidates, built once per list
+clue_table = None
 
-candidate_vecs = model.encode(candidate_clues)
+def clue_vectors(clues):
+    global clue_table
+    if clue_table is None or clue_table[0] is not clues:
+        vecs = np.asarray(encode(clues), dtype=np.float32)
+        unit = vecs / np.linalg.norm(vecs, axis=1, keepdims=True)
+        bias = np.array([noun_bias(c, 1.0) for c in clues])  # sign only; scaled per risk profile
+        position = {c.upper(): i for i, c in enumerate(clues)}
+        clue_table = (clues, unit, bias, position)
+    return clue_table[1:]
 
 # -----------------------------
-# 6. Utilities
+# 3. Utilities
 # -----------------------------
 def cosine(a, b):
     return np.dot(a, b) / (np.linalg.norm(a) * np.linalg.norm(b))
 
-def noun_bias(word):
+def noun_bias(word, weight=0.2):
     # Simple heuristic: abstract verbs/adverbs often end with these
     bad_suffixes = ("ly", "ing", "ed", "ness", "ful", "less")
-    return -0.2 if word.endswith(bad_suffixes) else 0.2
+    return -weight if word.endswith(bad_suffixes) else weight
 
 # -----------------------------
-# 7. Risk parameters
+# 4. Risk parameters
 # -----------------------------
-RISK = {
-    "SAFE":       {"assassin_max": 0.30, "penalty_weight": 1.5, "threshold": 0.85},
-    "NORMAL":     {"assassin_max": 0.40, "penalty_weight": 1.0, "threshold": 0.80},
-    "AGGRESSIVE": {"assassin_max": 0.55, "penalty_weight": 0.7, "threshold": 0.72}
-}[risk_mode]
+# Mirrored by RiskProfile.java; "java RiskTuner" sweeps these over simulated games
+RISK_PROFILES = {
+    "SAFE":       {"assassin_max": 0.30, "penalty_weight": 1.5, "threshold": 0.85, "multi_word_bonus": 0.6, "noun_bias": 0.2},
+    "NORMAL":     {"assassin_max": 0.40, "penalty_weight": 1.0, "threshold": 0.80, "multi_word_bonus": 0.6, "noun_bias": 0.2},
+    "AGGRESSIVE": {"assassin_max": 0.55, "penalty_weight": 0.7, "threshold": 0.72, "multi_word_bonus": 0.6, "noun_bias": 0.2}
+}
 
 # -----------------------------
-# 8. Scoring function
+# 5. Hint computation
 # -----------------------------
-def score_clue(clue, vec):
-    # Target reward
-    sims = [cosine(vec, tv) for tv in target_vecs]
-    target_score = sum(sims)
+def parse_board(board):
+    current_team = board.get("team", "RED")
+    risk_mode = board.get("risk", "NORMAL").upper()
 
-    # Multi-word bonus
-    multi_bonus = sum(1 for s in sims if s > 0.5) * 0.6
+    red_words = [w.upper() for w in board.get("red_words", [])]
+    blue_words = [w.upper() for w in board.get("blue_words", [])]
+    neutral_words = [w.upper() for w in board.get("neutral_words", [])]
+    assassin = board.get("assassin", "").upper()
+    revealed_words = set(w.upper() for w in board.get("revealed", []))
 
-    # Penalties
-    bad_vecs = list(penalty_vecs) + list(neutral_vecs)
-    penalty = np.mean([cosine(vec, bv) for bv in bad_vecs]) if bad_vecs else 0
+    red_words = [w for w in red_words if w not in revealed_words]
+    blue_words = [w for w in blue_words if w not in revealed_words]
+    neutral_words = [w for w in neutral_words if w not in revealed_words]
+    assassin = assassin if assassin and assassin not in revealed_words else None
 
-    # Assassin hard block
-    if assassin_vec is not None:
-        assassin_sim = cosine(vec, assassin_vec)
-        if assassin_sim > RISK["assassin_max"]:
-            return -999  # absolute veto
+    # Team logic
+    if current_team == "BLUE":
+        target_words, penalty_words = blue_words, red_words
     else:
-        assassin_sim = 0
+        target_words, penalty_words = red_words, blue_words
+
+    if not target_words:
+        return None
+
+    return {
+        "team": current_team,
+        "risk_mode": risk_mode,
+        "risk": RISK_PROFILES[risk_mode],
+        "target_words": target_words,
+        "bad_words": penalty_words + neutral_words,
+        "assassin": assassin,
+        "board_words": set(red_words + blue_words + neutral_words + ([assassin] if assassin else []))
+    }
+
+def rank_clues_batch(boards, timings=None):
+    # Scores every board in one pass: a single encode call for the union of
+    # their words, and a single candidates x words cosine matrix that each
+    # board then reads its own columns from. None for boards with no targets.
+    # If given, timings["encode_ms"] gets the time spent fetching vectors.
+    parsed = [parse_board(b) for b in boards]
+    live = [p for p in parsed if p is not None]
+    if not live:
+        return parsed
+
+    words = list(dict.fromkeys(w for p in live for w in p["board_words"]))
+    clues = clue_candidates()
+    start = time.perf_counter()
+    clue_unit, bias, position = clue_vectors(clues)
+    vecs = np.asarray(encode(words), dtype=np.float32)
+    if timings is not None:
+        timings["encode_ms"] = (time.perf_counter() - start) * 1000
+    unit = vecs / np.linalg.norm(vecs, axis=1, keepdims=True)
+    sims = clue_unit @ unit.T
+    column = {w: i for i, w in enumerate(words)}
+
+    ranked = []
+    for p in parsed:
+        if p is None:
+            ranked.append(None)
+            continue
+        risk = p["risk"]
+
+        # Remove board words
+        keep = np.ones(len(clues), dtype=bool)
+        keep[[position[w] for w in p["board_words"] if w in position]] = False
+        keep = np.flatnonzero(keep)
+        board_sims = sims[keep]
+
+        # Target reward plus multi-word bonus
+        target_sims = board_sims[:, [column[w] for w in p["target_words"]]]
+        scores = (target_sims.sum(axis=1)
+                  + (target_sims > 0.5).sum(axis=1) * risk["multi_word_bonus"]
+                  + bias[keep] * risk["noun_bias"])
+
+        # Penalties
+        if p["bad_words"]:
+            scores -= board_sims[:, [column[w] for w in p["bad_words"]]].mean(axis=1) * risk["penalty_weight"]
+
+        # Assassin hard block
+        if p["assassin"]:
+            assassin_sims = board_sims[:, column[p["assassin"]]]
+            scores -= assassin_sims * 2
+            scores[assassin_sims > risk["assassin_max"]] = -999  # absolute veto
+
+        ranked.append({
+            "team": p["team"],
+            "risk_mode": p["risk_mode"],
+            "risk": risk,
+            "target_words": p["target_words"],
+            "target_sims": target_sims,
+            "clues": [clues[i] for i in keep],
+            "scores": scores
+        })
+    return ranked
 
-    return (
-        target_score
-        + multi_bonus
-        - penalty * RISK["penalty_weight"]
-        + noun_bias(clue)
-        - assassin_sim * 2
-    )
+def rank_clues(board):
+    return rank_clues_batch([board])[0]
+
+def pick_hint(ranked):
+    if ranked is None:
+        return {"clue": "GAME_OVER", "number": 0}
+
+    # Rank clues
+    sorted_indices = np.argsort(ranked["scores"])[::-1]
+
+    # Pick from top 3 for variety
+    best_index = random.choice(sorted_indices[:3])
+    best_clue = ranked["clues"][best_index].upper()
+
+    # Dynamic number selection
+    sims = ranked["target_sims"][best_index]
+    threshold = ranked["risk"]["threshold"] * sims.max()
+
+    number = int((sims > threshold).sum())
+    number = max(1, min(number, len(ranked["target_words"])))
+
+    print(f"[{ranked['team']} | {ranked['risk_mode']}] AI Hint: {best_clue} ({number})", file=sys.stderr)
+    print("Targets:", ranked["target_words"], file=sys.stderr)
+
+    return {
+        "clue": best_clue,
+        "number": number
+    }
+
+def compute_hints(boards, timings=None):
+    # timings, if given, receives encode_ms and score_ms (everything else: ranking and picking)
+    start = time.perf_counter()
+    local = {"encode_ms": 0.0}
+    hints = [pick_hint(ranked) for ranked in rank_clues_batch(boards, local)]
+    if timings is not None:
+        timings["encode_ms"] = local["encode_ms"]
+        timings["score_ms"] = (time.perf_counter() - start) * 1000 - local["encode_ms"]
+    return hints
+
+def compute_hint(board):
+    return compute_hints([board])[0]
 
 # -----------------------------
-# 9. Rank clues
+# 6. Framed protocol
 # -----------------------------
-scores = [score_clue(c, v) for c, v in zip(candidate_clues, candidate_vecs)]
-sorted_indices = np.argsort(scores)[::-1]
+# Every message is a 4-byte big-endian length followed by that many bytes of
+# UTF-8 JSON. Requests carry an "id" that is echoed in the reply, so several
+# games can share one worker:
+#   {"id": 7, "type": "ping"}                -> {"id": 7, "type": "pong"}
+#   {"id": 8, "type": "hint", "state": {...}} -> {"id": 8, "clue": "OCEAN", "number": 2,
+#                                                 "encode_ms": 0.4, "score_ms": 1.2}
+#                                             or {"id": 8, "error": "..."}
+#   {"id": 9, "type": "hint_batch", "states": [{...}, ...]}
+#                                             -> {"id": 9, "hints": [{"clue": ..., "number": ...}, ...],
+#                                                 "encode_ms": ..., "score_ms": ...}
+#   {"id": 10, "type": "quit"}               -> worker exits
+# On startup the worker sends {"id": 0, "type": "ready", "load_ms": 850.0}.
+# The *_ms fields are the worker's own stage timings, for the Java-side metrics.
+FRAME_HEADER = struct.Struct(">I")
+
+def read_frame(stream):
+    header = stream.read(FRAME_HEADER.size)
+    if len(header) < FRAME_HEADER.size:
+        return None
+    (length,) = FRAME_HEADER.unpack(header)
+    payload = stream.read(length)
+    if len(payload) < length:
+        return None
+    return json.loads(payload.decode("utf-8"))
 
-# Pick from top 3 for variety
-best_index = random.choice(sorted_indices[:3])
-best_clue = candidate_clues[best_index].upper()
-best_vec = candidate_vecs[best_index]
+def write_frame(stream, message):
+    payload = json.dumps(message).encode("utf-8")
+    stream.write(FRAME_HEADER.pack(len(payload)) + payload)
+    stream.flush()
 
 # -----------------------------
-# 10. Dynamic number selection
+# 7. Worker mode
 # -----------------------------
-sims = [cosine(best_vec, tv) for tv in target_vecs]
-max_sim = max(sims)
-threshold = RISK["threshold"] * max_sim
+def serve():
+    requests = sys.stdin.buffer
+    replies = sys.stdout.buffer
+    # Anything printed by us or by libraries must not end up inside the frame stream
+    sys.stdout = sys.stderr
 
-number = sum(1 for s in sims if s > threshold)
-number = max(1, min(number, len(target_words)))
+    start = time.perf_counter()
+    if not load_store():
+        load_model()
+    write_frame(replies, {"id": 0, "type": "ready", "load_ms": (time.perf_counter() - start) * 1000})
+
+    while True:
+        request = read_frame(requests)
+        if request is None:
+            break
+        request_id = request.get("id", 0)
+        kind = request.get("type")
+        if kind == "ping":
+            write_frame(replies, {"id": request_id, "type": "pong"})
+        elif kind == "hint":
+            try:
+                timings = {}
+                hint = compute_hints([request["state"]], timings)[0]
+                write_frame(replies, {"id": request_id, "clue": hint["clue"], "number": hint["number"], **timings})
+            except Exception as e:
+                write_frame(replies, {"id": request_id, "error": str(e)})
+        elif kind == "hint_batch":
+            try:
+                timings = {}
+                hints = compute_hints(request["states"], timings)
+                write_frame(replies, {"id": request_id, "hints": hints, **timings})
+            except Exception as e:
+                write_frame(replies, {"id": request_id, "error": str(e)})
+        elif kind == "quit":
+            break
+        else:
+            write_frame(replies, {"id": request_id, "error": f"unknown request type {kind}"})
 
 # -----------------------------
-# 11. Output
+# 8. Precomputed embeddings
 # -----------------------------
-hint = {
-    "clue": best_clue,
-    "number": number
-}
+def load_vocab(vocab_path):
+    # One clue per line; the built-in candidates always come first
+    clues = list(candidate_clues)
+    seen = set(clues)
+    with open(vocab_path, "r", encoding="utf-8") as f:
+        for line in f:
+            word = line.strip().lower()
+            if word.isalpha() and word not in seen:
+                seen.add(word)
+                clues.append(word)
+    return clues
+
+def load_words(words_path):
+    # Word pack format shared with WordPack.java: one word per line, # comments
+    with open(words_path, "r", encoding="utf-8-sig") as f:
+        return [w.strip().upper() for w in f if w.strip() and not w.strip().startswith("#")]
+
+def export_embeddings(path, board_words, vocab_path=None):
+    model = load_model()
+    words = list(dict.fromkeys(w.upper() for w in board_words))
+    clues = load_vocab(vocab_path) if vocab_path else candidate_clues
+    rows = [(b"W", w) for w in words] + [(b"C", c) for c in clues]
+    vecs = np.asarray(model.encode([w for _, w in rows], batch_size=256), dtype="<f4")
+
+    index = b"".join(kind + struct.pack("<H", len(w.encode("utf-8"))) + w.encode("utf-8") for kind, w in rows)
+    data_offset = (STORE_HEADER.size + len(index) + 63) & ~63
 
-with open("hint.json", "w") as f:
-    json.dump(hint, f)
+    with open(path, "wb") as f:
+        f.write(STORE_HEADER.pack(STORE_MAGIC, STORE_VERSION, vecs.shape[1], len(rows), data_offset))
+        f.write(index)
+        f.write(b"\0" * (data_offset - STORE_HEADER.size - len(index)))
+        f.write(vecs.tobytes())
 
-print(f"[{current_team} | {risk_mode}] AI Hint: {best_clue} ({number})")
-print("Targets:", target_words)
+    print(f"Exported {len(rows)} embeddings to {path}", file=sys.stderr)
+
+# Raw clue scores for a state file, used by the Java engine's parity check
+def print_scores(state_path):
+    load_store()
+    with open(state_path, "r") as f:
+        board = json.load(f)
+
+    ranked = rank_clues(board)
+    scores = {} if ranked is None else {c: float(s) for c, s in zip(ranked["clues"], ranked["scores"])}
+    print(json.dumps(scores))
+
+if __name__ == "__main__":
+    args = sys.argv[1:]
+    if args and args[0] == "--export":
+        # --export PATH [--vocab FILE] [--words FILE] [WORDS...]
+        path, rest = args[1], args[2:]
+        options = {}
+        while len(rest) > 1 and rest[0] in ("--vocab", "--words"):
+            options[rest[0]] = rest[1]
+            rest = rest[2:]
+        words = rest + (load_words(options["--words"]) if "--words" in options else [])
+        export_embeddings(path, words, options.get("--vocab"))
+    elif args and args[0] == "--scores":
+        print_scores(args[1])
+    else:
+        serve()
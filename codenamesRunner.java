@@ -4,13 +4,19 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 
 public class codenamesRunner extends JFrame {
     private CodenamesBoard gameBoard;
+    private GameEngine gameEngine;
     private GameState gameState;
     private JPanel boardPanel;
+    private final CardButton[] cardButtons = new CardButton[CodenamesBoard.SIZE];
     private JPanel topPanel;
     private JLabel hintLabel;
     private JLabel numberLabel;
@@ -23,24 +29,80 @@ public class codenamesRunner extends JFrame {
     private JButton newGameButton;
     private JButton endTurnButton;
     private JButton resetGuessButton;
-    private JTextArea gameLogArea;
+    private JButton aiGuessButton;
+    private final GameLog gameLog = GameLog.create();
     
-    private String currentTeam = "RED";
-    private String startingTeam = "RED"; // Track which team goes first
-    private int cardsToWinByStartingTeam = 9; // Starting team has 9
-    private int cardsToWinByOtherTeam = 8;   // Other team has 8
-    private int guessesRemaining = 0;
     private boolean waitingForHint = false;
-    private boolean gameActive = true;
+    private Hint currentHint; // the clue being guessed, for the AI operative
+    private OperativeAI operative; // built once per store and risk mode, since it indexes every clue
+    private long hintAppliedAt = System.nanoTime(); // for the time-since-clue on reveal events
+    private String riskMode = "NORMAL";
+    private final Random random = seededRandom();
+    // The game in progress, so a crashed game resumes; finished games keep only their end position (-Dcodenames.journal)
+    private final GameJournal journal = GameJournal.open();
+    private final HintPrefetcher prefetcher = new HintPrefetcher(this::fetchHint);
+    // Bounded, with a deadline per clue (-Dcodenames.hintDeadlineMs) and a cheap fallback when it is missed
+    private final HintScheduler hintScheduler = new HintScheduler(this::prefetchedOrFetch, this::quickHint,
+        Long.getLong("codenames.hintDeadlineMs", 10_000), 2, 4);
     private javax.swing.Timer turnTimer;
     private int secondsRemaining = 180; // 3 minutes = 180 seconds
     
-    private static final String WORDS_FILE = "words.txt";
-    private static final String STATE_FILE = "state.json";
-    private static final String HINT_FILE = "hint.json";
-    private static final String PYTHON_SCRIPT = "codenamesAI.py";
-    
-    public static void main(String[] args) {
+    static final String WORDS_FILE = "words.txt"; // optional word pack, one board word per line
+    static final String PYTHON_SCRIPT = "codenamesAI.py";
+    static final String EMBEDDINGS_FILE = "embeddings.bin";
+    static final String CLUE_VOCAB_FILE = "clues.txt"; // optional extra clue words, one per line
+    
+    // One warm hint process shared by every turn and game in this JVM
+    private static final HintWorker hintWorker = new HintWorker(PYTHON_SCRIPT, new File(System.getProperty("user.dir")));
+    // Requests from the live turn and the prefetcher share worker round trips (-Dcodenames.batchDelayMs, -Dcodenames.batchSize)
+    private static final HintBatcher hintBatcher = new HintBatcher(hintWorker::requestHints,
+        Long.getLong("codenames.batchDelayMs", 2), Integer.getInteger("codenames.batchSize", 32));
+    // In-process scorer, used instead of the worker once the embeddings are loaded
+    private static volatile HintEngine hintEngine;
+    // Lookahead over the engine's top clues, only with -Dcodenames.searchMs
+    private static volatile ClueSearch clueSearch;
+    // Rankings of positions already scored, kept across launches in hint-cache.bin (-Dcodenames.hintCache)
+    private static volatile HintCache hintCache;
+    // Done when the engine has loaded, with null if it could not be; the first clue waits on it rather than
+    // starting the cold Python worker (-Dcodenames.engineWaitMs)
+    private static final CompletableFuture<HintEngine> engineLoad = new CompletableFuture<>();
+    private static final long ENGINE_WAIT_MS = Long.getLong("codenames.engineWaitMs", 5000);
+    
+    // Startup milestones, reported once the first clue is on screen
+    private static final long launchedAt = ProcessHandle.current().info().startInstant()
+        .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+    private static volatile long engineReadyAt;
+    private long uiReadyAt;
+    private boolean firstClueShown;
+    
+    public static void main(String[] args) throws Exception {
+        HintMetrics.dumpAtExitIfRequested();
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            Simulator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--tune")) {
+            RiskTuner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--replay")) {
+            GameJournal.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(hintWorker::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            HintCache cache = hintCache;
+            if (cache != null) cache.close();
+        }));
+        
+        // Load the embedding table (or the model) while the UI is being built
+        new Thread(codenamesRunner::loadHintEngine, "hint-engine-load").start();
+        
         SwingUtilities.invokeLater(() -> new codenamesRunner());
     }
     
@@ -51,12 +113,21 @@ public class codenamesRunner extends JFrame {
         setLocationRelativeTo(null);
         setResizable(true);
         
-        // Initialize game
-        gameBoard = new CodenamesBoard();
+        // Initialize game, picking up an unfinished one from the journal after a crash
+        GameJournal.Replay resumed = resumeFromJournal();
+        if (journal != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+        }
+        if (resumed == null) {
+            gameBoard = newBoard();
+            gameEngine = new GameEngine(gameBoard);
+            dealGame();
+        }
         gameState = new GameState();
-        startingTeam = new Random().nextBoolean() ? "RED" : "BLUE";
-        gameBoard.generateBoard(startingTeam);
-        saveStateToJSON();
+        if (resumed == null || resumed.hint == null) {
+            // The first clue is worked out while the window is built; requestAIHint picks it up
+            prefetcher.speculate(gameBoard, gameEngine.getCurrentTeam(), riskMode);
+        }
         
         // UI Setup
         setLayout(new BorderLayout(10, 10));
@@ -138,19 +209,18 @@ public class codenamesRunner extends JFrame {
         boardPanel.setLayout(new GridLayout(5, 5, 5, 5));
         boardPanel.setBackground(Color.WHITE);
         boardPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        // Buttons are created once; games and reveals only update their model
+        for (int i = 0; i < cardButtons.length; i++) {
+            int card = i;
+            cardButtons[i] = new CardButton();
+            cardButtons[i].addActionListener(e -> handleCardClick(gameBoard.wordAt(card)));
+            boardPanel.add(cardButtons[i]);
+        }
         updateBoardDisplay();
         centerPanel.add(new JScrollPane(boardPanel));
         
-        // Game log
-        gameLogArea = new JTextArea();
-        gameLogArea.setEditable(false);
-        gameLogArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        gameLogArea.setBackground(new Color(30, 30, 30));
-        gameLogArea.setForeground(new Color(200, 200, 200));
-        gameLogArea.setLineWrap(true);
-        gameLogArea.setWrapStyleWord(true);
-        gameLogArea.setMargin(new Insets(10, 10, 10, 10));
-        centerPanel.add(new JScrollPane(gameLogArea));
+        // Game log: bounded in memory, full history in game-log.txt
+        centerPanel.add(gameLog.createView());
         
         add(centerPanel, BorderLayout.CENTER);
         
@@ -168,92 +238,211 @@ public class codenamesRunner extends JFrame {
         resetGuessButton.addActionListener(e -> resetGuesses());
         bottomPanel.add(newGameButton);
         bottomPanel.add(endTurnButton);
+        aiGuessButton = new JButton("AI Guess");
+        aiGuessButton.setFont(new Font("Arial", Font.BOLD, 14));
+        aiGuessButton.addActionListener(e -> aiGuess());
         bottomPanel.add(resetGuessButton);
+        bottomPanel.add(aiGuessButton);
         add(bottomPanel, BorderLayout.SOUTH);
         
         setVisible(true);
+        uiReadyAt = System.currentTimeMillis();
+        
+        if (resumed != null) {
+            addLog(GameLog.Kind.GAME, "=== GAME RESUMED ===");
+            updateScores();
+            updateGuessCount();
+            updateStatus();
+            if (resumed.hint != null) {
+                currentHint = resumed.hint;
+                hintLabel.setText(resumed.hint.clue);
+                numberLabel.setText(String.valueOf(resumed.hint.number));
+                addLog(GameLog.Kind.CLUE, "--- SPYMASTER (" + gameEngine.getCurrentTeam() + ") gives clue: " + resumed.hint.clue + " (" + resumed.hint.number + ") ---");
+                startTurnTimer();
+                speculateNextHint();
+                return;
+            }
+        }
         
         // Request initial hint
         requestAIHint();
     }
     
+    private static Random seededRandom() {
+        Long seed = Long.getLong("codenames.seed");
+        return seed == null ? new Random() : new Random(seed);
+    }
+    
+    // Deals from a seed of its own, which is all the journal needs to deal the same board again
+    private void dealGame() {
+        String startingTeam = random.nextBoolean() ? "RED" : "BLUE";
+        long seed = random.nextLong();
+        gameEngine.newGame(startingTeam, new Random(seed));
+        journal(j -> j.newGame(gameEngine, seed));
+    }
+    
+    private GameJournal.Replay resumeFromJournal() {
+        if (journal == null) {
+            return null;
+        }
+        try {
+            GameJournal.Replay replay = GameJournal.resume(journal.getPath(), newBoard());
+            if (replay == null || !replay.engine.isActive()) {
+                return null;
+            }
+            gameBoard = replay.engine.getBoard();
+            gameEngine = replay.engine;
+            journal.attach(replay);
+            return replay;
+        } catch (IOException e) {
+            System.err.println("Could not resume from journal: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private interface JournalWrite {
+        void write(GameJournal journal) throws IOException;
+    }
+    
+    // A failed journal write costs the ability to resume, never the game in progress
+    private void journal(JournalWrite write) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            write.write(journal);
+        } catch (IOException e) {
+            System.err.println("Journal write failed: " + e.getMessage());
+        }
+    }
+    
     private void updateBoardDisplay() {
-        boardPanel.removeAll();
-        for (String word : gameBoard.getAllWords()) {
-            CardButton btn = new CardButton(word, gameBoard.getCardTeam(word), gameBoard.isRevealed(word));
-            btn.addActionListener(e -> handleCardClick(word));
-            boardPanel.add(btn);
+        for (int i = 0; i < cardButtons.length; i++) {
+            cardButtons[i].setCard(gameBoard.wordAt(i), gameBoard.teamAt(i), gameBoard.isCardRevealed(i));
         }
-        boardPanel.revalidate();
-        boardPanel.repaint();
+    }
+    
+    // Repaints only the card whose revealed state changed
+    private void updateCard(int card) {
+        cardButtons[card].setRevealed(gameBoard.isCardRevealed(card));
     }
     
     private void handleCardClick(String word) {
         // Prevent card clicks during various states
-        if (!gameActive || gameBoard.isRevealed(word) || waitingForHint || guessesRemaining <= 0) {
+        if (!gameEngine.isActive() || gameBoard.isRevealed(word) || waitingForHint || gameEngine.getGuessesRemaining() <= 0) {
             return;
         }
         
-        gameBoard.reveal(word);
-        updateBoardDisplay();
-        updateScores();
-        
+        String currentTeam = gameEngine.getCurrentTeam();
         String team = gameBoard.getCardTeam(word);
-        guessesRemaining--;
+        GameEngine.Outcome outcome = gameEngine.guess(word);
+        journal(j -> j.reveal(gameBoard.indexOf(word), outcome));
+        HintMetrics.reveal(word, currentTeam, team, outcome, System.nanoTime() - hintAppliedAt);
+        updateCard(gameBoard.indexOf(word));
+        updateScores();
         updateGuessCount();
         
-        if (team.equals(currentTeam)) {
-            // Correct guess!
-            addLog("✓ " + word + " - Correct! (" + currentTeam + ")");
-            checkWinCondition();
-            if (gameActive && guessesRemaining > 0) {
+        switch (outcome) {
+            case CORRECT:
+                addLog(GameLog.Kind.CORRECT, "✓ " + word + " - Correct! (" + currentTeam + ")");
                 addLog("Team " + currentTeam + " can guess again!");
-            } else if (guessesRemaining == 0) {
+                speculateNextHint();
+                break;
+            case CORRECT_OUT_OF_GUESSES:
                 // Auto-end turn when guesses run out
+                addLog(GameLog.Kind.CORRECT, "✓ " + word + " - Correct! (" + currentTeam + ")");
                 addLog("Out of guesses! Turn ends.");
                 switchTeam();
-            }
-        } else if (team.equals("ASSASSIN")) {
-            // Game over - hit the assassin
-            addLog("☠ " + word + " - ASSASSIN! Team " + currentTeam + " LOSES!");
-            gameActive = false;
-            if (turnTimer != null) {
-                turnTimer.stop();
-            }
-            gameLogArea.append("\n=== GAME OVER ===\nTeam " + (currentTeam.equals("RED") ? "BLUE" : "RED") + " WINS!\n");
-            endTurnButton.setEnabled(false);
-            resetGuessButton.setEnabled(false);
-        } else {
-            // Wrong guess - end turn
-            addLog("✗ " + word + " - Wrong! (" + team + ") Turn ENDS.");
-            switchTeam();
+                break;
+            case WRONG:
+                // Wrong guess - end turn
+                addLog(GameLog.Kind.WRONG, "✗ " + word + " - Wrong! (" + team + ") Turn ENDS.");
+                switchTeam();
+                break;
+            case ASSASSIN:
+                // Game over - hit the assassin
+                addLog(GameLog.Kind.ASSASSIN, "☠ " + word + " - ASSASSIN! Team " + currentTeam + " LOSES!");
+                showGameOver();
+                break;
+            case WIN:
+                if (team.equals(currentTeam)) {
+                    addLog(GameLog.Kind.CORRECT, "✓ " + word + " - Correct! (" + currentTeam + ")");
+                } else {
+                    addLog(GameLog.Kind.WRONG, "✗ " + word + " - Wrong! (" + team + ")");
+                }
+                showGameOver();
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void showGameOver() {
+        if (turnTimer != null) {
+            turnTimer.stop();
         }
+        prefetcher.cancel();
+        hintScheduler.invalidate();
+        addLog(GameLog.Kind.GAME, "=== GAME OVER ===");
+        addLog(GameLog.Kind.GAME, "Team " + gameEngine.getWinner() + " WINS!");
+        endTurnButton.setEnabled(false);
+        resetGuessButton.setEnabled(false);
     }
     
     private void switchTeam() {
+        switchTeam(false);
+    }
+    
+    private void switchTeam(boolean timedOut) {
         // Stop the timer
         if (turnTimer != null) {
             turnTimer.stop();
         }
         
-        currentTeam = currentTeam.equals("RED") ? "BLUE" : "RED";
-        guessesRemaining = 0;
+        gameEngine.endTurn();
+        journal(timedOut ? GameJournal::timeout : GameJournal::endTurn);
         secondsRemaining = 180; // Reset to 3 minutes
         updateGuessCount();
         updateStatus();
-        addLog("\n>>> " + currentTeam + " TEAM'S TURN <<<\n");
+        addLog(GameLog.Kind.TURN, ">>> " + gameEngine.getCurrentTeam() + " TEAM'S TURN <<<");
         requestAIHint();
     }
     
     private void endTurn() {
-        if (guessesRemaining > 0) {
-            addLog("Team " + currentTeam + " ended turn early with " + guessesRemaining + " guess(es) remaining.");
+        if (gameEngine.getGuessesRemaining() > 0) {
+            addLog("Team " + gameEngine.getCurrentTeam() + " ended turn early with " + gameEngine.getGuessesRemaining() + " guess(es) remaining.");
         }
         switchTeam();
     }
     
+    // One guess by the operative AI for the current clue, or ends the turn when it would rather stop
+    private void aiGuess() {
+        HintEngine engine = hintEngine;
+        if (!gameEngine.isActive() || waitingForHint || currentHint == null || gameEngine.getGuessesRemaining() <= 0) {
+            return;
+        }
+        if (engine == null) {
+            addLog("AI operative needs the embeddings, which are not loaded yet.");
+            return;
+        }
+        int guessesMade = Math.max(0, currentHint.number + 1 - gameEngine.getGuessesRemaining());
+        RiskProfile risk = RiskProfile.forName(riskMode);
+        if (operative == null || operative.getStore() != engine.getStore() || operative.getRisk() != risk) {
+            operative = new OperativeAI(engine.getStore(), risk);
+        }
+        String word = operative.nextGuess(gameBoard, gameEngine.getCurrentTeam(), currentHint, guessesMade, random);
+        if (word == null) {
+            addLog("AI operative passes.");
+            endTurn();
+            return;
+        }
+        addLog("AI operative guesses " + word + ".");
+        handleCardClick(word);
+    }
+    
     private void resetGuesses() {
-        guessesRemaining = 0;
+        gameEngine.resetGuesses();
+        journal(GameJournal::resetGuesses);
         updateGuessCount();
         addLog("Guesses reset to 0.");
     }
@@ -270,12 +459,12 @@ public class codenamesRunner extends JFrame {
             
             if (secondsRemaining <= 0) {
                 turnTimer.stop();
-                addLog("⏰ TIME'S UP! Turn automatically ends.");
-                switchTeam();
+                addLog(GameLog.Kind.TIMER, "⏰ TIME'S UP! Turn automatically ends.");
+                switchTeam(true);
             } else if (secondsRemaining == 30) {
-                addLog("⚠ 30 seconds remaining!");
+                addLog(GameLog.Kind.TIMER, "⚠ 30 seconds remaining!");
             } else if (secondsRemaining == 10) {
-                addLog("⚠⚠ 10 seconds remaining!");
+                addLog(GameLog.Kind.TIMER, "⚠⚠ 10 seconds remaining!");
             }
         });
         turnTimer.start();
@@ -287,46 +476,18 @@ public class codenamesRunner extends JFrame {
         timerLabel.setText(String.format("⏱ Time: %d:%02d", minutes, seconds));
     }
     
-    private void checkWinCondition() {
-        int redRevealed = gameBoard.getRevealedCount("RED");
-        int blueRevealed = gameBoard.getRevealedCount("BLUE");
-        
-        // Determine which team needs 9 and which needs 8
-        int redTarget = startingTeam.equals("RED") ? 9 : 8;
-        int blueTarget = startingTeam.equals("BLUE") ? 9 : 8;
-        
-        if (redRevealed == redTarget) {
-            gameLogArea.append("\n=== GAME OVER ===\nTeam RED WINS!\n");
-            gameActive = false;
-            if (turnTimer != null) {
-                turnTimer.stop();
-            }
-            endTurnButton.setEnabled(false);
-            resetGuessButton.setEnabled(false);
-        } else if (blueRevealed == blueTarget) {
-            gameLogArea.append("\n=== GAME OVER ===\nTeam BLUE WINS!\n");
-            gameActive = false;
-            if (turnTimer != null) {
-                turnTimer.stop();
-            }
-            endTurnButton.setEnabled(false);
-            resetGuessButton.setEnabled(false);
-        }
-    }
-    
     private void updateGuessCount() {
-        guessCountLabel.setText("Guesses Remaining: " + guessesRemaining);
+        guessCountLabel.setText("Guesses Remaining: " + gameEngine.getGuessesRemaining());
     }
     
     private void updateScores() {
         int redRevealed = gameBoard.getRevealedCount("RED");
         int blueRevealed = gameBoard.getRevealedCount("BLUE");
-        int totalRevealed = redRevealed + blueRevealed + gameBoard.getRevealedCount("NEUTRAL") + (gameBoard.isRevealed(gameBoard.getAssassin()) ? 1 : 0);
-        int unrevealed = 25 - totalRevealed;
+        int unrevealed = gameBoard.getUnrevealedCount();
         
         // Show targets based on which team started first
-        int redTarget = startingTeam.equals("RED") ? 9 : 8;
-        int blueTarget = startingTeam.equals("BLUE") ? 9 : 8;
+        int redTarget = gameEngine.targetFor("RED");
+        int blueTarget = gameEngine.targetFor("BLUE");
         
         redScoreLabel.setText("RED: " + redRevealed + "/" + redTarget);
         blueScoreLabel.setText("BLUE: " + blueRevealed + "/" + blueTarget);
@@ -334,7 +495,7 @@ public class codenamesRunner extends JFrame {
     }
     
     private void updateStatus() {
-        if (currentTeam.equals("RED")) {
+        if (gameEngine.getCurrentTeam().equals("RED")) {
             statusLabel.setText("🔴 RED TEAM - Operatives Guessing");
         } else {
             statusLabel.setText("🔵 BLUE TEAM - Operatives Guessing");
@@ -342,39 +503,95 @@ public class codenamesRunner extends JFrame {
     }
     
     private void addLog(String message) {
-        gameLogArea.append(message + "\n");
-        gameLogArea.setCaretPosition(gameLogArea.getDocument().getLength());
+        addLog(GameLog.Kind.INFO, message);
+    }
+    
+    private void addLog(GameLog.Kind kind, String message) {
+        gameLog.add(kind, message);
     }
     
-    private void saveStateToJSON() {
+    static String stateToJson(CodenamesBoard board, String team, String risk) {
+        JsonCodec.Writer json = new JsonCodec.Writer();
+        JsonCodec.writeState(json, board, team, risk);
+        return json.toString();
+    }
+    
+    // Maps the precomputed embedding store for the Java engine, exporting it with
+    // the Python script on first run. Falls back to warming the worker if that fails.
+    private static void loadHintEngine() {
         try {
-            StringBuilder json = new StringBuilder();
-            json.append("{\n");
-            json.append("  \"team\": \"").append(currentTeam).append("\",\n");
-            json.append("  \"red_words\": ").append(listToJsonArray(gameBoard.getRedWords())).append(",\n");
-            json.append("  \"blue_words\": ").append(listToJsonArray(gameBoard.getBlueWords())).append(",\n");
-            json.append("  \"neutral_words\": ").append(listToJsonArray(gameBoard.getNeutralWords())).append(",\n");
-            json.append("  \"assassin\": \"").append(gameBoard.getAssassin()).append("\",\n");
-            json.append("  \"revealed\": ").append(listToJsonArray(new ArrayList<>(gameBoard.getRevealedWords()))).append("\n");
-            json.append("}");
-            
-            FileWriter file = new FileWriter(STATE_FILE);
-            file.write(json.toString());
-            file.close();
-            System.out.println("State saved to " + STATE_FILE);
-        } catch (IOException e) {
-            e.printStackTrace();
+            long start = System.nanoTime();
+            EmbeddingStore store = loadEmbeddings();
+            store.preload();
+            HintEngine engine = new HintEngine(store);
+            clueSearch = ClueSearch.fromProperties(engine);
+            hintCache = HintCache.open(engine);
+            hintEngine = engine;
+            HintMetrics.record(HintMetrics.Stage.MODEL_LOAD, "engine", System.nanoTime() - start);
+            engineReadyAt = System.currentTimeMillis();
+            engineLoad.complete(engine);
+            System.out.println("Hint engine loaded from " + EMBEDDINGS_FILE);
+        } catch (Exception e) {
+            engineLoad.complete(null);
+            System.err.println("Java hint engine unavailable, using Python worker: " + e.getMessage());
+            try {
+                hintWorker.start();
+            } catch (IOException ex) {
+                System.err.println("Could not pre-start hint worker: " + ex.getMessage());
+            }
         }
     }
     
-    private String listToJsonArray(List<String> list) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < list.size(); i++) {
-            sb.append("\"").append(list.get(i)).append("\"");
-            if (i < list.size() - 1) sb.append(", ");
+    // The embedding store, re-exported first if it is missing or does not cover every
+    // board word (a word pack added after the export has words the store cannot score)
+    static EmbeddingStore loadEmbeddings() throws IOException {
+        List<String> words = CodenamesBoard.getWordList();
+        if (new File(EMBEDDINGS_FILE).exists()) {
+            EmbeddingStore store = EmbeddingStore.load(EMBEDDINGS_FILE);
+            if (covers(store, words)) {
+                return store;
+            }
+            System.err.println(EMBEDDINGS_FILE + " is missing board words, exporting it again");
+        }
+        try {
+            exportEmbeddings(words);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Embedding export interrupted");
+        }
+        return EmbeddingStore.load(EMBEDDINGS_FILE);
+    }
+    
+    private static boolean covers(EmbeddingStore store, List<String> words) {
+        for (String word : words) {
+            if (store.row(word) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Board words go through a file, since a large pack would not fit on a command line.
+    // The store is written beside the old one and renamed over it, so an open mapping never sees a half-written file.
+    private static void exportEmbeddings(List<String> words) throws IOException, InterruptedException {
+        Path wordsFile = Files.createTempFile("codenames-words", ".txt");
+        Path exported = Paths.get(EMBEDDINGS_FILE + ".tmp");
+        try {
+            Files.write(wordsFile, words, StandardCharsets.UTF_8);
+            List<String> command = new ArrayList<>(Arrays.asList("python3", PYTHON_SCRIPT, "--export", exported.toString()));
+            if (new File(CLUE_VOCAB_FILE).exists()) {
+                command.addAll(Arrays.asList("--vocab", CLUE_VOCAB_FILE));
+            }
+            command.addAll(Arrays.asList("--words", wordsFile.toString()));
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            if (process.waitFor() != 0) {
+                throw new IOException("Embedding export exited with code " + process.exitValue());
+            }
+            Files.move(exported, Paths.get(EMBEDDINGS_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(wordsFile);
+            Files.deleteIfExists(exported);
         }
-        sb.append("]");
-        return sb.toString();
     }
     
     private void requestAIHint() {
@@ -382,108 +599,150 @@ public class codenamesRunner extends JFrame {
         hintLabel.setText("Getting spymaster clue...");
         numberLabel.setText("?");
         
-        new Thread(() -> {
-            try {
-                // Save current state
-                saveStateToJSON();
-                
-                // Run Python script
-                ProcessBuilder pb = new ProcessBuilder("python3", PYTHON_SCRIPT);
-                pb.directory(new File(System.getProperty("user.dir")));
-                Process process = pb.start();
-                
-                // Capture any errors
-                BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-                String errorLine;
-                while ((errorLine = errorReader.readLine()) != null) {
-                    System.err.println("Python error: " + errorLine);
-                }
-                
-                int exitCode = process.waitFor();
-                System.out.println("Python script exited with code: " + exitCode);
-                
-                // Read hint from JSON
-                Thread.sleep(100); // Give file system time to write
-                String hintJson = readFileAsString(HINT_FILE);
-                String clue = extractJsonValue(hintJson, "clue");
-                int number = Integer.parseInt(extractJsonValue(hintJson, "number"));
-                
-                SwingUtilities.invokeLater(() -> {
-                    hintLabel.setText(clue);
-                    numberLabel.setText(String.valueOf(number));
-                    guessesRemaining = number + 1; // +1 for the bonus
-                    updateGuessCount();
-                    updateStatus();
-                    addLog("--- SPYMASTER (" + currentTeam + ") gives clue: " + clue + " (" + number + ") ---");
-                    waitingForHint = false;
-                    startTurnTimer(); // Start timer after hint is received
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> {
-                    hintLabel.setText("Error loading hint");
-                    addLog("ERROR: Could not get AI hint - " + e.getMessage());
-                    waitingForHint = false;
-                });
+        String team = gameEngine.getCurrentTeam();
+        long requestedAt = System.nanoTime();
+        HintMetrics.HintEvent event = new HintMetrics.HintEvent();
+        event.begin();
+        
+        // A new request makes any older one stale, so a slow clue can never land on a later turn or game
+        hintScheduler.request(gameBoard, team, riskMode, result -> SwingUtilities.invokeLater(() -> {
+            if (!hintScheduler.isCurrent(result.generation)) {
+                return;
+            }
+            long applyStart = System.nanoTime();
+            waitingForHint = false;
+            if (result.error != null) {
+                result.error.printStackTrace();
+                hintLabel.setText("Error loading hint");
+                addLog(GameLog.Kind.ERROR, "ERROR: Could not get AI hint - " + result.error.getMessage());
+                return;
+            }
+            Hint hint = result.hint;
+            String source = result.source;
+            currentHint = hint;
+            hintLabel.setText(hint.clue);
+            numberLabel.setText(String.valueOf(hint.number));
+            gameEngine.applyHint(hint); // +1 for the bonus
+            journal(j -> j.hint(hint));
+            updateGuessCount();
+            updateStatus();
+            hintAppliedAt = System.nanoTime();
+            HintMetrics.record(HintMetrics.Stage.APPLY, source, hintAppliedAt - applyStart);
+            HintMetrics.record(HintMetrics.Stage.TOTAL, source, hintAppliedAt - requestedAt);
+            HintMetrics.hint(event, team, riskMode, hint, source);
+            if (hint == Hint.NO_CLUE) {
+                addLog("(Spymaster AI too slow and no quick clue fits - guess without one)");
+            } else if (result.fallback) {
+                addLog("(Spymaster AI too slow - using a quick clue)");
+            }
+            if (!firstClueShown) {
+                firstClueShown = true;
+                reportStartup(source);
             }
-        }).start();
+            addLog(GameLog.Kind.CLUE, "--- SPYMASTER (" + gameEngine.getCurrentTeam() + ") gives clue: " + hint.clue + " (" + hint.number + ") ---");
+            startTurnTimer(); // Start timer after hint is received
+            speculateNextHint();
+        }));
+    }
+    
+    // Usually ready already: it was worked out while the other team was guessing
+    private ServedHint prefetchedOrFetch(CodenamesBoard board, String team, String risk) throws Exception {
+        ServedHint prefetched = prefetcher.take(board, team, risk);
+        return prefetched != null ? prefetched : fetchHint(board.copy(), team, risk);
+    }
+    
+    // Deadline fallback: the in-process engine if it is loaded, otherwise fixed word categories
+    private ServedHint quickHint(CodenamesBoard board, String team, String risk) {
+        HintEngine engine = hintEngine;
+        Hint hint = engine != null ? suggest(engine, board, team, risk).hint : FallbackHints.suggest(board, team);
+        return new ServedHint(hint, "fallback");
+    }
+    
+    private static CodenamesBoard newBoard() {
+        HintEngine engine = hintEngine;
+        return new CodenamesBoard(engine == null ? null : engine.getStore());
     }
     
-    private String readFileAsString(String filePath) throws IOException {
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                content.append(line);
+    private ServedHint fetchHint(CodenamesBoard board, String team, String risk) throws Exception {
+        HintEngine engine = awaitEngine();
+        ClueSearch search = clueSearch;
+        if (search != null) {
+            return new ServedHint(search.suggest(board, team, RiskProfile.forName(risk), random), "search");
+        }
+        if (engine != null) {
+            return suggest(engine, board, team, risk);
+        }
+        return new ServedHint(hintBatcher.requestHint(board, team, risk), "worker");
+    }
+    
+    // SCORE is sampled only for a real scoring pass; a cache hit is a lookup and only counted
+    private ServedHint suggest(HintEngine engine, CodenamesBoard board, String team, String risk) {
+        RiskProfile profile = RiskProfile.forName(risk);
+        HintCache cache = hintCache;
+        HintCache.Key key = null;
+        if (cache != null) {
+            key = HintCache.keyOf(board, team, profile);
+            List<Hint> cached = cache.get(key);
+            if (cached != null) {
+                HintMetrics.count("hint_cache_hit");
+                return new ServedHint(HintEngine.pick(cached, random), "cache");
             }
         }
-        return content.toString();
+        long start = System.nanoTime();
+        List<Hint> ranked = engine.ranked(board, team, profile);
+        HintMetrics.record(HintMetrics.Stage.SCORE, "engine", System.nanoTime() - start);
+        if (cache != null) {
+            cache.put(key, ranked);
+        }
+        return new ServedHint(HintEngine.pick(ranked, random), "engine");
     }
     
-    private String extractJsonValue(String json, String key) {
-        String search = "\"" + key + "\":";
-        int start = json.indexOf(search);
-        if (start == -1) return "";
-        start += search.length();
-        
-        // Skip whitespace
-        while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
-            start++;
+    // The engine, waiting a little while it is still loading: mapping the store takes far less than a cold worker
+    private static HintEngine awaitEngine() throws InterruptedException {
+        HintEngine engine = hintEngine;
+        if (engine != null || engineLoad.isDone()) {
+            return engine;
         }
-        
-        // Check if value is a string (quoted) or number (unquoted)
-        if (json.charAt(start) == '"') {
-            // String value
-            start++;
-            int end = json.indexOf("\"", start);
-            if (end == -1) return "";
-            return json.substring(start, end);
-        } else {
-            // Number or other unquoted value
-            int end = start;
-            while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}' && json.charAt(end) != ']') {
-                end++;
-            }
-            return json.substring(start, end).trim();
+        try {
+            return engineLoad.get(ENGINE_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+    
+    // One line per launch: how long from process start until a clue could be played
+    private void reportStartup(String source) {
+        long now = System.currentTimeMillis();
+        HintMetrics.recordMillis(HintMetrics.Stage.FIRST_CLUE, source, now - launchedAt);
+        String report = "Time to first clue: " + (now - launchedAt) + " ms (window " + (uiReadyAt - launchedAt) + " ms, engine "
+            + (engineReadyAt == 0 ? "not loaded" : (engineReadyAt - launchedAt) + " ms") + ", clue from " + source + ")";
+        System.out.println(report);
+        addLog(report);
+    }
+    
+    // Starts on the other team's clue for the board as it is now; every reveal restarts it
+    private void speculateNextHint() {
+        if (gameEngine.isActive()) {
+            prefetcher.speculate(gameBoard, GameEngine.otherTeam(gameEngine.getCurrentTeam()), riskMode);
         }
     }
     
     private void startNewGame() {
-        gameBoard = new CodenamesBoard();
+        prefetcher.cancel();
+        hintScheduler.invalidate();
+        gameBoard = newBoard();
+        gameEngine = new GameEngine(gameBoard);
         
         // Randomize which team starts first
-        startingTeam = new Random().nextBoolean() ? "RED" : "BLUE";
-        currentTeam = startingTeam;
-        gameBoard.generateBoard(startingTeam);
+        dealGame();
         gameState = new GameState();
         
-        saveStateToJSON();
         updateBoardDisplay();
         hintLabel.setText("Waiting for spymaster clue...");
         numberLabel.setText("?");
-        gameLogArea.setText("=== NEW GAME STARTED ===\n" + currentTeam + " team goes first!\n\n");
-        guessesRemaining = 0;
-        gameActive = true;
+        gameLog.newGame();
+        addLog(GameLog.Kind.GAME, "=== NEW GAME STARTED ===");
+        addLog(gameEngine.getCurrentTeam() + " team goes first!");
         waitingForHint = false;
         secondsRemaining = 180;
         endTurnButton.setEnabled(true);
@@ -498,175 +757,68 @@ public class codenamesRunner extends JFrame {
         if (!unrevealed.isEmpty()) {
             String word = unrevealed.get(new Random().nextInt(unrevealed.size()));
             gameBoard.reveal(word);
-            updateBoardDisplay();
+            updateCard(gameBoard.indexOf(word));
         }
     }
     
     // Custom Card Button
     static class CardButton extends JButton {
-        private String team;
+        // Shared by all cards so repaints allocate nothing
+        private static final Font CARD_FONT = new Font("Arial", Font.BOLD, 16);
+        private static final Insets CARD_MARGIN = new Insets(10, 10, 10, 10);
+        private static final javax.swing.border.Border CARD_BORDER = BorderFactory.createLineBorder(Color.BLACK, 2);
+        private static final Color RED_CARD = new Color(220, 50, 50);
+        private static final Color BLUE_CARD = new Color(50, 120, 220);
+        private static final Color NEUTRAL_CARD = new Color(180, 180, 180);
+        private static final Color HIDDEN_CARD = new Color(240, 220, 180);
+        private static final Color HIDDEN_TEXT = new Color(80, 60, 40);
+        
+        private byte team = Team.NEUTRAL;
         private boolean revealed;
         
-        CardButton(String text, String team, boolean revealed) {
-            super(text);
+        CardButton() {
+            setFont(CARD_FONT);
+            setFocusPainted(false);
+            setMargin(CARD_MARGIN);
+            setOpaque(true);
+            setBorder(CARD_BORDER);
+        }
+        
+        void setCard(String text, byte team, boolean revealed) {
+            setText(text);
             this.team = team;
             this.revealed = revealed;
-            setFont(new Font("Arial", Font.BOLD, 16));
-            setFocusPainted(false);
-            setMargin(new Insets(10, 10, 10, 10));
             updateAppearance();
         }
         
+        void setRevealed(boolean revealed) {
+            if (this.revealed != revealed) {
+                this.revealed = revealed;
+                updateAppearance();
+            }
+        }
+        
         void updateAppearance() {
             if (revealed) {
                 setForeground(Color.WHITE);
-                switch(team) {
-                    case "RED":
-                        setBackground(new Color(220, 50, 50));
+                switch (team) {
+                    case Team.RED:
+                        setBackground(RED_CARD);
                         break;
-                    case "BLUE":
-                        setBackground(new Color(50, 120, 220));
+                    case Team.BLUE:
+                        setBackground(BLUE_CARD);
                         break;
-                    case "ASSASSIN":
+                    case Team.ASSASSIN:
                         setBackground(Color.BLACK);
                         break;
                     default: // NEUTRAL
-                        setBackground(new Color(180, 180, 180));
+                        setBackground(NEUTRAL_CARD);
                 }
             } else {
-                setBackground(new Color(240, 220, 180));
-                setForeground(new Color(80, 60, 40));
+                setBackground(HIDDEN_CARD);
+                setForeground(HIDDEN_TEXT);
             }
-            setOpaque(true);
-            setBorder(BorderFactory.createLineBorder(Color.BLACK, 2));
-        }
-    }
-}
-
-// Board logic
-class CodenamesBoard {
-    private List<String> allWords = new ArrayList<>();
-    private Map<String, String> wordTeamMap = new HashMap<>();
-    private Set<String> revealed = new HashSet<>();
-    
-    private static final List<String> WORD_LIST = Arrays.asList(
-        "BRIDGE", "BATTERY", "COMET", "KEY", "OCTOPUS",
-        "RIVER", "MOON", "LIGHTNING", "LOCK", "CIRCUIT",
-        "TABLE", "PAINT", "BOOK", "APPLE", "PENCIL",
-        "SHARK", "CAR", "PLANT", "GLASS", "KNIFE",
-        "BEAR", "COMPUTER", "CHAIR", "PAPER", "DRAGON",
-        "BALL", "STAR", "CROWN", "PICTURE", "VIOLIN",
-        "WINDOW", "GUITAR", "CASTLE", "DIAMOND", "HAMMER",
-        "TIGER", "CLOCK", "BOOT", "SHIP", "BICYCLE"
-    );
-    
-    void generateBoard(String startingTeam) {
-        allWords.clear();
-        wordTeamMap.clear();
-        revealed.clear();
-        
-        // Shuffle and pick 25 words for 5x5 board
-        List<String> shuffled = new ArrayList<>(WORD_LIST);
-        Collections.shuffle(shuffled);
-        List<String> selected = shuffled.subList(0, 25);
-        allWords = selected;
-        
-        // Assign teams - starting team gets 9, other team gets 8
-        Collections.shuffle(selected);
-        int idx = 0;
-        // Distribution: 9 cards to starting team, 8 to other, 7 neutral, 1 assassin
-        if (startingTeam.equals("RED")) {
-            // RED: 9, BLUE: 8, NEUTRAL: 7, ASSASSIN: 1
-            for (int i = 0; i < 9; i++) {
-                wordTeamMap.put(selected.get(idx++), "RED");
-            }
-            for (int i = 0; i < 8; i++) {
-                wordTeamMap.put(selected.get(idx++), "BLUE");
-            }
-        } else {
-            // BLUE: 9, RED: 8, NEUTRAL: 7, ASSASSIN: 1
-            for (int i = 0; i < 8; i++) {
-                wordTeamMap.put(selected.get(idx++), "RED");
-            }
-            for (int i = 0; i < 9; i++) {
-                wordTeamMap.put(selected.get(idx++), "BLUE");
-            }
-        }
-        for (int i = 0; i < 7; i++) {
-            wordTeamMap.put(selected.get(idx++), "NEUTRAL");
         }
-        wordTeamMap.put(selected.get(idx), "ASSASSIN");
-    }
-    
-    List<String> getAllWords() {
-        return new ArrayList<>(allWords);
-    }
-    
-    List<String> getRedWords() {
-        return getWordsByTeam("RED");
-    }
-    
-    List<String> getBlueWords() {
-        return getWordsByTeam("BLUE");
-    }
-    
-    List<String> getNeutralWords() {
-        return getWordsByTeam("NEUTRAL");
-    }
-    
-    private List<String> getWordsByTeam(String team) {
-        List<String> result = new ArrayList<>();
-        for (Map.Entry<String, String> entry : wordTeamMap.entrySet()) {
-            if (entry.getValue().equals(team)) {
-                result.add(entry.getKey());
-            }
-        }
-        return result;
-    }
-    
-    String getAssassin() {
-        for (Map.Entry<String, String> entry : wordTeamMap.entrySet()) {
-            if (entry.getValue().equals("ASSASSIN")) {
-                return entry.getKey();
-            }
-        }
-        return "";
-    }
-    
-    String getCardTeam(String word) {
-        return wordTeamMap.getOrDefault(word, "NEUTRAL");
-    }
-    
-    void reveal(String word) {
-        revealed.add(word);
-    }
-    
-    boolean isRevealed(String word) {
-        return revealed.contains(word);
-    }
-    
-    List<String> getUnrevealedWords() {
-        List<String> unrevealed = new ArrayList<>();
-        for (String word : allWords) {
-            if (!revealed.contains(word)) {
-                unrevealed.add(word);
-            }
-        }
-        return unrevealed;
-    }
-    
-    int getRevealedCount(String team) {
-        int count = 0;
-        for (Map.Entry<String, String> entry : wordTeamMap.entrySet()) {
-            if (entry.getValue().equals(team) && revealed.contains(entry.getKey())) {
-                count++;
-            }
-        }
-        return count;
-    }
-    
-    Set<String> getRevealedWords() {
-        return new HashSet<>(revealed);
     }
 }
 